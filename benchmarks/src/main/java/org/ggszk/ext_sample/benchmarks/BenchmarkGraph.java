@@ -0,0 +1,81 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.ggszk.ext_sample.Sample;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+import org.neo4j.kernel.impl.proc.Procedures;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Embedded database with a generated graph and the sample procedures
+ *
+ * One graph per trial, of the shape and size given by the parameters.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkGraph {
+	@Param({ "grid", "geometric", "powerlaw" })
+	public String shape;
+
+	@Param({ "10000" })
+	public int nodes;
+
+	@Param({ "42" })
+	public long seed;
+
+	public GraphDatabaseService db;
+	// ids of generated nodes
+	public long[] ids;
+	private File directory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("neo4j-bench").toFile();
+		db = new GraphDatabaseFactory().newEmbeddedDatabase(directory);
+		((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(Procedures.class).registerProcedure(Sample.class);
+		ids = new GraphGenerator(db, seed).generate(shape, nodes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		db.shutdown();
+		FileUtils.deleteRecursively(directory);
+	}
+
+	// random node id
+	public long node(final SplittableRandom random) {
+		return ids[random.nextInt(ids.length)];
+	}
+
+	// run query outside of measurement
+	public void execute(final String query, final Map<String, Object> params) {
+		try (Result result = db.execute(query, params)) {
+			while (result.hasNext()) {
+				result.next();
+			}
+		}
+	}
+
+	// run query and consume all rows
+	public void run(final String query, final Map<String, Object> params, final Blackhole bh) {
+		try (Result result = db.execute(query, params)) {
+			while (result.hasNext()) {
+				bh.consume(result.next());
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Synthetic weighted graphs for benchmarks
+ *
+ * Nodes get the label Bench and a sequence number `no`, relationships are
+ * CONNECT_TO with a `cost`. About one node in a hundred gets the category
+ * 'ramen' for trip planning. Graphs are reproducible for a given seed.
+ */
+public class GraphGenerator {
+	public static final Label LABEL = Label.label("Bench");
+	public static final RelationshipType TYPE = RelationshipType.withName("CONNECT_TO");
+	public static final String CATEGORY = "ramen";
+	// operations in one transaction
+	private static final int BATCH = 10000;
+
+	private final GraphDatabaseService db;
+	private final Random random;
+	private Transaction tx;
+	private int ops = 0;
+
+	public GraphGenerator(final GraphDatabaseService db, final long seed) {
+		this.db = db;
+		this.random = new Random(seed);
+	}
+
+	// generate graph of shape with about n nodes, returns node ids
+	public long[] generate(final String shape, final int n) {
+		switch (shape) {
+		case "grid":
+			return grid((int) Math.ceil(Math.sqrt(n)));
+		case "geometric":
+			return geometric(n, 6.0);
+		case "powerlaw":
+			return powerLaw(n, 3);
+		default:
+			throw new IllegalArgumentException("Unknown graph shape: " + shape);
+		}
+	}
+
+	// side x side grid, each node connected to right and lower neighbour
+	public long[] grid(final int side) {
+		final Node[] nodes = createNodes(side * side);
+		for (int i = 0; i < nodes.length; i++) {
+			if ((i + 1) % side != 0) {
+				connect(nodes[i], nodes[i + 1], 1 + random.nextInt(10));
+			}
+			if (i + side < nodes.length) {
+				connect(nodes[i], nodes[i + side], 1 + random.nextInt(10));
+			}
+		}
+		return finish(nodes);
+	}
+
+	// random points in unit square, connected within the radius giving the average degree
+	// (cost is the distance, so the graph looks like a road network)
+	public long[] geometric(final int n, final double degree) {
+		final Node[] nodes = createNodes(n);
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextDouble();
+			y[i] = random.nextDouble();
+		}
+		final double radius = Math.sqrt(degree / (Math.PI * n));
+		// bucket points into cells of radius size
+		final int cells = Math.max(1, (int) (1.0 / radius));
+		final List<List<Integer>> buckets = new ArrayList<>(cells * cells);
+		for (int c = 0; c < cells * cells; c++) {
+			buckets.add(new ArrayList<>());
+		}
+		for (int i = 0; i < n; i++) {
+			buckets.get(cell(x[i], cells) * cells + cell(y[i], cells)).add(i);
+		}
+		for (int i = 0; i < n; i++) {
+			final int cx = cell(x[i], cells);
+			final int cy = cell(y[i], cells);
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					if (cx + dx < 0 || cx + dx >= cells || cy + dy < 0 || cy + dy >= cells) {
+						continue;
+					}
+					for (final int j : buckets.get((cx + dx) * cells + cy + dy)) {
+						final double d = Math.hypot(x[i] - x[j], y[i] - y[j]);
+						// each pair once
+						if (j > i && d <= radius) {
+							connect(nodes[i], nodes[j], 1.0 + d * 1000.0);
+						}
+					}
+				}
+			}
+		}
+		return finish(nodes);
+	}
+
+	// preferential attachment (Barabasi-Albert): each new node connects to m existing
+	// nodes chosen with probability proportional to their degree
+	public long[] powerLaw(final int n, final int m) {
+		final Node[] nodes = createNodes(n);
+		// every end point of every relationship, so a uniform pick is degree proportional
+		final int[] ends = new int[2 * m * n];
+		int size = 0;
+		for (int i = 1; i < n; i++) {
+			for (int k = 0; k < Math.min(m, i); k++) {
+				final int j = size == 0 ? 0 : ends[random.nextInt(size)];
+				connect(nodes[i], nodes[j], 1 + random.nextInt(10));
+				ends[size++] = i;
+				ends[size++] = j;
+			}
+		}
+		return finish(nodes);
+	}
+
+	private static int cell(final double v, final int cells) {
+		return Math.min(cells - 1, (int) (v * cells));
+	}
+
+	private Node[] createNodes(final int n) {
+		tx = db.beginTx();
+		final Node[] nodes = new Node[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = db.createNode(LABEL);
+			nodes[i].setProperty("no", i);
+			if (random.nextInt(100) == 0) {
+				nodes[i].setProperty("category", CATEGORY);
+			}
+			batch();
+		}
+		return nodes;
+	}
+
+	private void connect(final Node a, final Node b, final double cost) {
+		a.createRelationshipTo(b, TYPE).setProperty("cost", cost);
+		batch();
+	}
+
+	// commit every BATCH operations (node proxies only keep the id, so they stay usable)
+	private void batch() {
+		if (++ops % BATCH == 0) {
+			tx.success();
+			tx.close();
+			tx = db.beginTx();
+		}
+	}
+
+	private long[] finish(final Node[] nodes) {
+		tx.success();
+		tx.close();
+		final long[] ids = new long[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			ids[i] = nodes[i].getId();
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,127 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of routing on a projection, with landmarks and a contraction hierarchy,
+ * and on a projection mapped from its snapshot file
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class ProjectionBenchmark {
+	static final String NAME = "bench";
+	// projection opened from its snapshot file
+	static final String SNAPSHOT = "benchsnap";
+
+	// projection with landmarks and contraction hierarchy of the graph
+	@State(Scope.Benchmark)
+	public static class Indexed {
+		@Setup(Level.Trial)
+		public void setUp(final BenchmarkGraph graph) {
+			graph.execute("CALL example.projection.load($name, 'Bench', 'CONNECT_TO')", params());
+			graph.execute("CALL example.landmarks.build($name)", params());
+			graph.execute("CALL example.ch.build($name)", params());
+		}
+	}
+
+	// projection saved to a snapshot file and mapped
+	@State(Scope.Benchmark)
+	public static class Saved {
+		@Setup(Level.Trial)
+		public void setUp(final BenchmarkGraph graph) {
+			final Map<String, Object> params = Collections.singletonMap("name", SNAPSHOT);
+			graph.execute("CALL example.projection.load($name, 'Bench', 'CONNECT_TO')", params);
+			graph.execute("CALL example.projection.save($name)", params);
+			graph.execute("CALL example.projection.open($name)", params);
+		}
+	}
+
+	@Benchmark
+	public void sample8_1(final BenchmarkGraph graph, final Indexed indexed, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.projection.sample8_1($name, $from, $to)", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void sample8_2(final BenchmarkGraph graph, final Indexed indexed, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.projection.sample8_2($name, $from, $to)", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void sample8_2Mapped(final BenchmarkGraph graph, final Saved saved, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = RoutingBenchmark.pair(graph, queries);
+		params.put("name", SNAPSHOT);
+		graph.run("CALL example.projection.sample8_2($name, $from, $to)", params, bh);
+	}
+
+	@Benchmark
+	public void astar(final BenchmarkGraph graph, final Indexed indexed, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.projection.astar($name, $from, $to)", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void chQuery(final BenchmarkGraph graph, final Indexed indexed, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.ch.query($name, $from, $to)", pair(graph, queries), bh);
+	}
+
+	// building the projection and its indexes, one call per iteration
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void load(final BenchmarkGraph graph, final Blackhole bh) {
+		graph.run("CALL example.projection.load($name, 'Bench', 'CONNECT_TO')", params(), bh);
+	}
+
+	// mapping the snapshot instead of loading from the store
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void open(final BenchmarkGraph graph, final Saved saved, final Blackhole bh) {
+		graph.run("CALL example.projection.open($name)", Collections.singletonMap("name", SNAPSHOT), bh);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void landmarksBuild(final BenchmarkGraph graph, final Indexed indexed, final Blackhole bh) {
+		graph.run("CALL example.landmarks.build($name)", params(), bh);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void chBuild(final BenchmarkGraph graph, final Indexed indexed, final Blackhole bh) {
+		graph.run("CALL example.ch.build($name)", params(), bh);
+	}
+
+	private static Map<String, Object> params() {
+		return Collections.singletonMap("name", NAME);
+	}
+
+	private static Map<String, Object> pair(final BenchmarkGraph graph, final Queries queries) {
+		final Map<String, Object> params = RoutingBenchmark.pair(graph, queries);
+		params.put("name", NAME);
+		return params;
+	}
+}
@@ -0,0 +1,39 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Random query end points, one sequence per benchmark thread
+ */
+@State(Scope.Thread)
+public class Queries {
+	// end points of the skewed workload, so that pairs repeat
+	private static final int HOT_NODES = 64;
+
+	private SplittableRandom random;
+	private long[] hot;
+
+	@Setup(Level.Trial)
+	public void setUp(final BenchmarkGraph graph, final ThreadParams thread) {
+		random = new SplittableRandom(graph.seed + thread.getThreadIndex());
+		hot = new long[HOT_NODES];
+		for (int i = 0; i < HOT_NODES; i++) {
+			hot[i] = graph.node(random);
+		}
+	}
+
+	public long node(final BenchmarkGraph graph) {
+		return graph.node(random);
+	}
+
+	// one of few nodes
+	public long hotNode() {
+		return hot[random.nextInt(HOT_NODES)];
+	}
+}
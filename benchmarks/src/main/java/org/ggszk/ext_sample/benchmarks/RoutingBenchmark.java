@@ -0,0 +1,113 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the point-to-point routing procedures between random nodes,
+ * and of isochrones around random nodes
+ *
+ * The route cache is bypassed except by sample8_2Cached, whose pairs repeat.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class RoutingBenchmark {
+	// size of both sides of cost matrix
+	private static final int MATRIX_SIZE = 5;
+	// number of alternative routes
+	private static final long K = 5;
+	// cost limit of isochrones (a few relationships of the generated graphs)
+	private static final double ISOCHRONE_COST = 20.0;
+
+	@Benchmark
+	public void sample8_1(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sample8_1($from, $to, {cache:false})", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void sample8_2(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sample8_2($from, $to, {cache:false})", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void sample8_2Cached(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("from", queries.hotNode());
+		params.put("to", queries.hotNode());
+		graph.run("CALL example.sample8_2($from, $to)", params, bh);
+	}
+
+	@Benchmark
+	public void sample9_1(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = pair(graph, queries);
+		params.put("category", GraphGenerator.CATEGORY);
+		graph.run("CALL example.sample9_1($from, $to, $category, {cache:false})", params, bh);
+	}
+
+	@Benchmark
+	public void sample9_2(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = pair(graph, queries);
+		// two stops (the generated graph has one category)
+		params.put("categories", Arrays.asList(GraphGenerator.CATEGORY, GraphGenerator.CATEGORY));
+		graph.run("CALL example.sample9_2($from, $to, $categories)", params, bh);
+	}
+
+	@Benchmark
+	public void shortestHops(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.shortestHops($from, $to, {cache:false})", pair(graph, queries), bh);
+	}
+
+	@Benchmark
+	public void kShortestPaths(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = pair(graph, queries);
+		params.put("k", K);
+		graph.run("CALL example.kShortestPaths($from, $to, $k)", params, bh);
+	}
+
+	@Benchmark
+	public void costMatrix(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("from", nodes(graph, queries, MATRIX_SIZE));
+		params.put("to", nodes(graph, queries, MATRIX_SIZE));
+		graph.run("CALL example.costMatrix($from, $to)", params, bh);
+	}
+
+	@Benchmark
+	public void isochrone(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("from", queries.node(graph));
+		params.put("maxCost", ISOCHRONE_COST);
+		graph.run("CALL example.isochrone($from, $maxCost)", params, bh);
+	}
+
+	static Map<String, Object> pair(final BenchmarkGraph graph, final Queries queries) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("from", queries.node(graph));
+		params.put("to", queries.node(graph));
+		return params;
+	}
+
+	private static List<Long> nodes(final BenchmarkGraph graph, final Queries queries, final int n) {
+		final List<Long> ids = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			ids.add(queries.node(graph));
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,81 @@
+package org.ggszk.ext_sample.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of sample4_x and the whole-component traversals sample6_x, sssp
+ * and multiSourceBfs
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class TraversalBenchmark {
+	// start nodes of multi-source BFS: one batch
+	private static final int SOURCES = 64;
+
+	@Benchmark
+	public void sample4_1(final BenchmarkGraph graph, final Blackhole bh) {
+		graph.run("CALL example.sample4_1('Karl', 'Leister')", Collections.emptyMap(), bh);
+	}
+
+	@Benchmark
+	public void sample4_2(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sample4_2($id)", Collections.singletonMap("id", queries.node(graph)), bh);
+	}
+
+	@Benchmark
+	public void sample6_1(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sample6_1($id)", Collections.singletonMap("id", queries.node(graph)), bh);
+	}
+
+	@Benchmark
+	public void sample6_1parallel(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("id", queries.node(graph));
+		params.put("config", Collections.singletonMap("parallel", true));
+		graph.run("CALL example.sample6_1($id, $config)", params, bh);
+	}
+
+	@Benchmark
+	public void sample6_2(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sample6_2($id)", Collections.singletonMap("id", queries.node(graph)), bh);
+	}
+
+	@Benchmark
+	public void ssspDijkstra(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		graph.run("CALL example.sssp($id)", Collections.singletonMap("id", queries.node(graph)), bh);
+	}
+
+	@Benchmark
+	public void ssspDeltaStepping(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final Map<String, Object> params = new HashMap<>();
+		params.put("id", queries.node(graph));
+		params.put("config", Collections.singletonMap("engine", "deltaStepping"));
+		graph.run("CALL example.sssp($id, $config)", params, bh);
+	}
+
+	@Benchmark
+	public void multiSourceBfs(final BenchmarkGraph graph, final Queries queries, final Blackhole bh) {
+		final List<Long> ids = new ArrayList<>(SOURCES);
+		for (int i = 0; i < SOURCES; i++) {
+			ids.add(queries.node(graph));
+		}
+		graph.run("CALL example.multiSourceBfs($ids)", Collections.singletonMap("ids", ids), bh);
+	}
+}
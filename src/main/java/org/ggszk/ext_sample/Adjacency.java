@@ -0,0 +1,27 @@
+package org.ggszk.ext_sample;
+
+/**
+ * Weighted adjacency used by the shortest path engines
+ *
+ * Relationships are treated as undirected, like Node.getRelationships(),
+ * unless the implementation is given directions (see TraversalSpec).
+ * Node ids are whatever the implementation uses as ids: Neo4j node ids for
+ * the store, node indexes for a projection. Relationship ids are always Neo4j
+ * relationship ids, so paths can be materialized from them.
+ */
+public interface Adjacency {
+	// callback for each relationship of a node
+	public interface Visitor {
+		void visit(long rel_id, long other_id, double cost);
+	}
+
+	// visit relationships of the node with their costs
+	void expand(long node_id, Visitor visitor);
+
+	// number of relationships expand would visit
+	default long degree(final long node_id) {
+		final long[] degree = new long[1];
+		expand(node_id, (rel_id, other_id, cost) -> degree[0]++);
+		return degree[0];
+	}
+}
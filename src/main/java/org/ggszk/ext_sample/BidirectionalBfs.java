@@ -0,0 +1,203 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+/**
+ * Unweighted point-to-point search by BFS from both ends
+ *
+ * Each side grows level by level, and the side whose frontier has the lower
+ * degree sum is expanded next. The search stops after the level in which the
+ * frontiers meet, and the meeting node with the lowest hop count is taken.
+ * adjacency_t must follow relationships backwards for directed traversals.
+ */
+public class BidirectionalBfs {
+	// nodes found from one end: dense slots with parent slot, relationship and depth
+	private static class Side implements Adjacency.Visitor {
+		final Adjacency adjacency;
+		final LongIntHashMap slots = new LongIntHashMap();
+		final LongArrayList node_ids = new LongArrayList();
+		final LongArrayList rel_ids = new LongArrayList();
+		final IntArrayList parent_slots = new IntArrayList();
+		final IntArrayList depths = new IntArrayList();
+		// slots of the current level and degree sum of its nodes
+		IntArrayList frontier = new IntArrayList();
+		long degree_sum;
+		int depth = 0;
+		// next level while expanding
+		IntArrayList next;
+		int cur_slot;
+		Side other;
+		// best meeting slot of this side and its hop count
+		int meet_slot = -1;
+		int meet_hops = Integer.MAX_VALUE;
+		Counters counters;
+
+		Side(final Adjacency adjacency, final long start_id, final Counters counters) {
+			this.adjacency = adjacency;
+			this.counters = counters;
+			frontier.add(add(start_id, -1, -1, 0));
+			degree_sum = adjacency.degree(start_id);
+		}
+
+		int add(final long node_id, final long rel_id, final int parent_slot, final int d) {
+			final int slot = node_ids.size();
+			slots.put(node_id, slot);
+			node_ids.add(node_id);
+			rel_ids.add(rel_id);
+			parent_slots.add(parent_slot);
+			depths.add(d);
+			return slot;
+		}
+
+		// expand the current level
+		void expandLevel(final Budget budget) {
+			next = new IntArrayList();
+			for (int i = 0; i < frontier.size(); i++) {
+				cur_slot = frontier.get(i);
+				counters.nodes_settled++;
+				final String over = budget.check(counters.nodes_settled, depth + other.depth + 1);
+				if (over != null) {
+					throw new BudgetException(over);
+				}
+				adjacency.expand(node_ids.get(cur_slot), this);
+			}
+			frontier = next;
+			// (not while expanding: the adjacency's cursors are in use)
+			degree_sum = 0;
+			for (int i = 0; i < next.size(); i++) {
+				degree_sum += adjacency.degree(node_ids.get(next.get(i)));
+			}
+			depth++;
+			counters.heap_pushes += next.size();
+			counters.frontier(next.size());
+		}
+
+		@Override
+		public void visit(final long rel_id, final long n_id, final double cost) {
+			counters.relationships_expanded++;
+			if (slots.containsKey(n_id)) {
+				return;
+			}
+			final int slot = add(n_id, rel_id, cur_slot, depth + 1);
+			next.add(slot);
+			// frontiers meet
+			final int o_slot = other.slots.getIfAbsent(n_id, -1);
+			if (o_slot >= 0 && depth + 1 + other.depths.get(o_slot) < meet_hops) {
+				meet_hops = depth + 1 + other.depths.get(o_slot);
+				meet_slot = slot;
+			}
+		}
+
+		// relationship ids from the start node to slot
+		long[] path(int slot) {
+			final long[] rels = new long[depths.get(slot)];
+			for (int i = rels.length - 1; i >= 0; i--) {
+				rels[i] = rel_ids.get(slot);
+				slot = parent_slots.get(slot);
+			}
+			return rels;
+		}
+
+		// node ids from the start node to slot
+		long[] nodePath(int slot) {
+			final long[] ids = new long[depths.get(slot) + 1];
+			for (int i = ids.length - 1; i >= 0; i--) {
+				ids[i] = node_ids.get(slot);
+				slot = parent_slots.get(slot);
+			}
+			return ids;
+		}
+	}
+
+	// thrown out of a level when the budget runs out
+	private static class BudgetException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final String status;
+
+		BudgetException(final String status) {
+			super(status, null, false, false);
+			this.status = status;
+		}
+	}
+
+	private final Side side_f;
+	private final Side side_t;
+	// meeting node id, -1 if the ends are not connected (or the budget ran out)
+	private long meet_id = -1;
+	private int hops = -1;
+	private String status = Budget.OK;
+
+	public BidirectionalBfs(final Adjacency adjacency_f, final Adjacency adjacency_t, final long from_id, final long to_id, final Counters counters,
+			final Budget budget) {
+		side_f = new Side(adjacency_f, from_id, counters);
+		side_t = new Side(adjacency_t, to_id, counters);
+		side_f.other = side_t;
+		side_t.other = side_f;
+		if (from_id == to_id) {
+			meet_id = from_id;
+			hops = 0;
+			return;
+		}
+		try {
+			search(budget);
+		} catch (final BudgetException e) {
+			status = e.status;
+		}
+	}
+
+	private void search(final Budget budget) {
+		while (!side_f.frontier.isEmpty() && !side_t.frontier.isEmpty()) {
+			// hops of any path not found yet exceed maxDepth
+			if (!budget.canExpand(side_f.depth + side_t.depth)) {
+				status = Budget.MAX_DEPTH;
+				return;
+			}
+			// expand the side with less relationships to read
+			final Side side = side_f.degree_sum <= side_t.degree_sum ? side_f : side_t;
+			side.expandLevel(budget);
+			if (side.meet_slot >= 0) {
+				meet_id = side.node_ids.get(side.meet_slot);
+				hops = side.meet_hops;
+				return;
+			}
+		}
+	}
+
+	// number of hops of the path, -1 if none was found
+	public int hops() {
+		return hops;
+	}
+
+	// OK, or the limit that stopped the search
+	public String status() {
+		return status;
+	}
+
+	// lower bound of hops of a path, for a search stopped by its budget
+	public int bound() {
+		return side_f.depth + side_t.depth + 1;
+	}
+
+	// relationship ids of the path, null if none was found
+	public long[] path() {
+		if (meet_id < 0) {
+			return null;
+		}
+		return Sample.join(side_f.path(side_f.slots.get(meet_id)), side_t.path(side_t.slots.get(meet_id)));
+	}
+
+	// node ids of the path, null if none was found
+	public long[] nodePath() {
+		if (meet_id < 0) {
+			return null;
+		}
+		final long[] f_ids = side_f.nodePath(side_f.slots.get(meet_id));
+		final long[] t_ids = side_t.nodePath(side_t.slots.get(meet_id));
+		// meet_id is the last of both
+		return Sample.join(f_ids, Arrays.copyOf(t_ids, t_ids.length - 1));
+	}
+}
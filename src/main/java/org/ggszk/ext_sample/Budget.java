@@ -0,0 +1,94 @@
+package org.ggszk.ext_sample;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Limits of one traversal, from the config map of a procedure
+ *
+ * - maxDepth: nodes at this depth are not expanded (BFS / DFS)
+ * - maxNodes: maximum number of nodes settled
+ * - maxCost: maximum cost searched (weighted searches)
+ * - timeoutMs: wall time of the call
+ * The termination guard of the transaction and the clock are checked on the
+ * first and then every CHECK_INTERVAL checks, the other limits on every check.
+ */
+public class Budget {
+	// status of a result
+	public static final String OK = "OK";
+	public static final String MAX_DEPTH = "MAX_DEPTH";
+	public static final String MAX_NODES = "MAX_NODES";
+	public static final String MAX_COST = "MAX_COST";
+	public static final String TIMEOUT = "TIMEOUT";
+	private static final int CHECK_INTERVAL = 1024;
+
+	private final long max_depth;
+	private final long max_nodes;
+	private final double max_cost;
+	// System.nanoTime() at start and wall time in nanoseconds, if has_deadline
+	// (elapsed time is compared, so a long timeout can't overflow)
+	private final boolean has_deadline;
+	private final long start;
+	private final long timeout_nanos;
+	// null if not called from a procedure
+	private final TerminationGuard guard;
+	private int checks = 0;
+
+	public Budget(final long max_depth, final long max_nodes, final double max_cost, final long timeout_ms, final TerminationGuard guard) {
+		if (timeout_ms < 0) {
+			throw new IllegalArgumentException("timeoutMs must not be negative: " + timeout_ms);
+		}
+		this.max_depth = max_depth;
+		this.max_nodes = max_nodes;
+		this.max_cost = max_cost;
+		// (toNanos saturates at Long.MAX_VALUE, about 292 years)
+		this.timeout_nanos = TimeUnit.MILLISECONDS.toNanos(timeout_ms);
+		this.has_deadline = timeout_nanos != Long.MAX_VALUE;
+		this.start = System.nanoTime();
+		this.guard = guard;
+	}
+
+	// no limits
+	public static Budget unlimited() {
+		return new Budget(Long.MAX_VALUE, Long.MAX_VALUE, Double.POSITIVE_INFINITY, Long.MAX_VALUE, null);
+	}
+
+	// limits in config, unlimited if not given
+	public static Budget of(final Map<String, Object> config, final TerminationGuard guard) {
+		return new Budget(longValue(config, "maxDepth"), longValue(config, "maxNodes"),
+				config.containsKey("maxCost") ? ((Number) config.get("maxCost")).doubleValue() : Double.POSITIVE_INFINITY,
+				longValue(config, "timeoutMs"), guard);
+	}
+
+	private static long longValue(final Map<String, Object> config, final String key) {
+		return config.containsKey(key) ? ((Number) config.get(key)).longValue() : Long.MAX_VALUE;
+	}
+
+	// true if a node at depth can be expanded
+	public boolean canExpand(final long depth) {
+		return depth < max_depth;
+	}
+
+	// status that stops a search which has settled nodes_settled nodes and
+	// whose next node costs at least cost, null if the search can go on
+	// (throws if the transaction was terminated)
+	public String check(final long nodes_settled, final double cost) {
+		if (nodes_settled >= max_nodes) {
+			return MAX_NODES;
+		}
+		if (cost > max_cost) {
+			return MAX_COST;
+		}
+		if (checks++ % CHECK_INTERVAL == 0) {
+			if (guard != null) {
+				guard.check();
+			}
+			if (has_deadline && System.nanoTime() - start >= timeout_nanos) {
+				return TIMEOUT;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,265 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.kernel.api.KernelTransaction;
+
+/**
+ * Weakly connected components: one int label per node id
+ *
+ * Built by example.components.build with a lock-free union-find over chunks
+ * of relationship ids on the Workers pool; a label is then the smallest node
+ * id of its component. Relationships created later are unioned on commit
+ * (labels become a union-find forest), deleted ones make the index stale,
+ * since a component can't be split without a rebuild. Until built, and when
+ * stale, no pair is known to be disconnected. Only committed state is indexed.
+ * Queries read the labels without locking: commits union with the same
+ * compare-and-set as the build, and publish a copy when the labels grow.
+ */
+public class ComponentIndex {
+	// relationship ids in one chunk of the build
+	private static final int CHUNK = 1 << 16;
+
+	// guards building and updating
+	private final Object lock = new Object();
+	// node id -> parent in union-find forest (root: itself), null until built
+	private volatile AtomicIntegerArray labels = null;
+	private volatile boolean stale = false;
+	// commits seen while building: created relationship end points, and whether any was deleted
+	private boolean building = false;
+	private final LongArrayList pending = new LongArrayList();
+	private boolean pending_deletion = false;
+
+	// true only if the nodes are known to be in different components
+	public boolean disconnected(final long a, final long b) {
+		final AtomicIntegerArray parents = labels;
+		if (parents == null || stale || a >= parents.length() || b >= parents.length()) {
+			return false;
+		}
+		return find(parents, (int) a) != find(parents, (int) b);
+	}
+
+	public boolean isBuilt() {
+		return labels != null;
+	}
+
+	// true if a relationship was deleted since the build
+	public boolean isStale() {
+		return stale;
+	}
+
+	// build from the store, returns the number of components of existing nodes
+	public long build(final GraphDatabaseService db, final int concurrency) {
+		synchronized (lock) {
+			if (building) {
+				throw new IllegalStateException("Component index is being built");
+			}
+			building = true;
+			pending.clear();
+			pending_deletion = false;
+		}
+		final AtomicIntegerArray built;
+		try {
+			final long node_count = Workers.nodeHighId(db);
+			if (node_count > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Too many nodes for component index: " + node_count);
+			}
+			final AtomicIntegerArray parents = new AtomicIntegerArray((int) node_count);
+			for (int i = 0; i < parents.length(); i++) {
+				parents.set(i, i);
+			}
+			// chunks of relationship ids, taken by the workers in turn
+			final long rel_count = Workers.relationshipHighId(db);
+			final long chunks = (rel_count + CHUNK - 1) / CHUNK;
+			final AtomicLong next = new AtomicLong();
+			final List<Future<Object>> futures = new ArrayList<>();
+			for (int w = 0; w < Math.max(1, concurrency); w++) {
+				futures.add(Workers.pool.submit(() -> {
+					long chunk;
+					while ((chunk = next.getAndIncrement()) < chunks) {
+						unionChunk(db, parents, chunk * CHUNK, Math.min(rel_count, (chunk + 1) * CHUNK));
+					}
+					return null;
+				}));
+			}
+			Workers.join(futures);
+			// labels are the roots
+			for (int i = 0; i < parents.length(); i++) {
+				parents.set(i, find(parents, i));
+			}
+			synchronized (lock) {
+				// relationships committed while building may have been missed by the scan
+				AtomicIntegerArray published = parents;
+				boolean too_large = false;
+				for (int i = 0; i < pending.size(); i += 2) {
+					final AtomicIntegerArray grown = grown(published, Math.max(pending.get(i), pending.get(i + 1)));
+					if (grown == null) {
+						too_large = true;
+					} else {
+						published = grown;
+						union(published, (int) pending.get(i), (int) pending.get(i + 1));
+					}
+				}
+				labels = published;
+				stale = pending_deletion || too_large;
+				built = published;
+			}
+		} finally {
+			synchronized (lock) {
+				building = false;
+				pending.clear();
+			}
+		}
+		// (commits from now on only join components of this snapshot)
+		return count(db, built);
+	}
+
+	// union end nodes of relationships with ids in [from, to)
+	private static void unionChunk(final GraphDatabaseService db, final AtomicIntegerArray parents, final long from, final long to) {
+		try (Transaction tx = db.beginTx()) {
+			final KernelTransaction ktx = KernelAdjacency.kernelTransaction(db);
+			final Read read = ktx.dataRead();
+			try (RelationshipScanCursor cursor = ktx.cursors().allocateRelationshipScanCursor()) {
+				for (long id = from; id < to; id++) {
+					read.singleRelationship(id, cursor);
+					if (cursor.next()) {
+						final long a = cursor.sourceNodeReference();
+						final long b = cursor.targetNodeReference();
+						// nodes created after the build started are unioned on commit
+						if (a < parents.length() && b < parents.length()) {
+							union(parents, (int) a, (int) b);
+						}
+					}
+				}
+			}
+			tx.success();
+		}
+	}
+
+	// number of roots among existing nodes
+	private static long count(final GraphDatabaseService db, final AtomicIntegerArray parents) {
+		long components = 0;
+		try (Transaction tx = db.beginTx()) {
+			final KernelTransaction ktx = KernelAdjacency.kernelTransaction(db);
+			try (NodeCursor cursor = ktx.cursors().allocateNodeCursor()) {
+				ktx.dataRead().allNodesScan(cursor);
+				while (cursor.next()) {
+					final long id = cursor.nodeReference();
+					if (id >= parents.length() || find(parents, (int) id) == id) {
+						components++;
+					}
+				}
+			}
+			tx.success();
+		}
+		return components;
+	}
+
+	// apply committed changes
+	public void onCommit(final TransactionData data) {
+		synchronized (lock) {
+			if (labels == null && !building) {
+				return;
+			}
+			final boolean deleted = data.deletedRelationships().iterator().hasNext();
+			if (building) {
+				pending_deletion |= deleted;
+				for (final Relationship rel : data.createdRelationships()) {
+					pending.add(rel.getStartNodeId());
+					pending.add(rel.getEndNodeId());
+				}
+			}
+			if (labels == null) {
+				return;
+			}
+			if (deleted) {
+				stale = true;
+			}
+			AtomicIntegerArray parents = labels;
+			// (an id of a deleted node may be reused)
+			for (final Node node : data.createdNodes()) {
+				final AtomicIntegerArray grown = grown(parents, node.getId());
+				if (grown == null) {
+					stale = true;
+				} else {
+					parents = grown;
+					parents.set((int) node.getId(), (int) node.getId());
+				}
+			}
+			for (final Relationship rel : data.createdRelationships()) {
+				final AtomicIntegerArray grown = grown(parents, Math.max(rel.getStartNodeId(), rel.getEndNodeId()));
+				if (grown == null) {
+					stale = true;
+				} else {
+					parents = grown;
+					union(parents, (int) rel.getStartNodeId(), (int) rel.getEndNodeId());
+				}
+			}
+			// a grown copy is published after its unions
+			labels = parents;
+		}
+	}
+
+	// parents, or a copy large enough for node id; null if the id doesn't fit in an int
+	private static AtomicIntegerArray grown(final AtomicIntegerArray parents, final long id) {
+		if (id >= Integer.MAX_VALUE) {
+			return null;
+		}
+		if (id < parents.length()) {
+			return parents;
+		}
+		final int old = parents.length();
+		final AtomicIntegerArray copy = new AtomicIntegerArray((int) Math.min(Integer.MAX_VALUE, Math.max(id + 1, old * 2L)));
+		for (int i = 0; i < copy.length(); i++) {
+			copy.set(i, i < old ? parents.get(i) : i);
+		}
+		return copy;
+	}
+
+	// root with path halving (safe with concurrent unions)
+	private static int find(final AtomicIntegerArray parents, int x) {
+		while (true) {
+			final int p = parents.get(x);
+			if (p == x) {
+				return x;
+			}
+			final int pp = parents.get(p);
+			if (pp != p) {
+				parents.compareAndSet(x, p, pp);
+			}
+			x = p;
+		}
+	}
+
+	// link the root with the larger id under the other one, retry if a root changed
+	private static void union(final AtomicIntegerArray parents, int a, int b) {
+		while (true) {
+			a = find(parents, a);
+			b = find(parents, b);
+			if (a == b) {
+				return;
+			}
+			if (a < b) {
+				final int t = a;
+				a = b;
+				b = t;
+			}
+			if (parents.compareAndSet(a, a, b)) {
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+/**
+ * Contraction Hierarchies (CH) index of a projection
+ *
+ * Nodes are contracted one by one in order of edge difference. When a node is
+ * contracted, a shortcut is added between two of its remaining neighbours unless
+ * a witness path avoiding it is found. A query is then a bidirectional djkstra
+ * that only follows edges to higher ranked nodes. A shortcut keeps the two
+ * edges it replaces, so a result can be unpacked to Neo4j relationship ids.
+ */
+public class ContractionHierarchy {
+	// maximum number of nodes settled in one witness search
+	private static final int WITNESS_SETTLED_LIMIT = 500;
+
+	private final int n;
+	// edge id -> end points, weight, Neo4j relationship id (-1 for shortcut)
+	// and the two edges (via mid node) that a shortcut replaces
+	private int[] edge_from;
+	private int[] edge_to;
+	private double[] edge_weights;
+	private long[] edge_rels;
+	private int[] edge_mid;
+	private int[] edge_child1;
+	private int[] edge_child2;
+	private int edge_count = 0;
+	private int shortcut_count = 0;
+	// node index -> contraction order
+	private final int[] rank;
+	// upward graph in CSR format: edges to higher ranked nodes
+	private int[] up_offsets;
+	private int[] up_edges;
+
+	// work state of build: remaining neighbours (node -> edge id) of every node
+	private IntIntHashMap[] adj;
+	private boolean[] contracted;
+	// witness search state, reused between searches
+	private double[] w_dist;
+	private IntArrayList w_touched;
+	private IndexedHeap w_heap;
+
+	private ContractionHierarchy(final int n) {
+		this.n = n;
+		this.rank = new int[n];
+		final int m = 16;
+		edge_from = new int[m];
+		edge_to = new int[m];
+		edge_weights = new double[m];
+		edge_rels = new long[m];
+		edge_mid = new int[m];
+		edge_child1 = new int[m];
+		edge_child2 = new int[m];
+	}
+
+	// contract all nodes of projection
+	public static ContractionHierarchy build(final Projection projection) {
+		final ContractionHierarchy ch = new ContractionHierarchy(projection.nodeCount());
+		ch.contractAll(projection);
+		return ch;
+	}
+
+	private void contractAll(final Projection projection) {
+		// original edges, keeping the lowest weight between two nodes
+		adj = new IntIntHashMap[n];
+		for (int v = 0; v < n; v++) {
+			adj[v] = new IntIntHashMap();
+		}
+		for (int v = 0; v < n; v++) {
+			for (int e = projection.offset(v); e < projection.offset(v + 1); e++) {
+				final int w = projection.target(e);
+				// each relationship is stored in both directions, take it once (and skip loops)
+				if (w <= v) {
+					continue;
+				}
+				final int old = adj[v].getIfAbsent(w, -1);
+				if (old < 0 || edge_weights[old] > projection.weight(e)) {
+					final int id = addEdge(v, w, projection.weight(e), projection.relationshipId(e), -1, -1, -1);
+					adj[v].put(w, id);
+					adj[w].put(v, id);
+				}
+			}
+		}
+		contracted = new boolean[n];
+		w_dist = new double[n];
+		Arrays.fill(w_dist, Double.POSITIVE_INFINITY);
+		w_touched = new IntArrayList();
+		w_heap = new IndexedHeap(64);
+
+		// node order by priority, updated lazily
+		final int[] deleted = new int[n];
+		final IndexedHeap order = new IndexedHeap(n);
+		for (int v = 0; v < n; v++) {
+			order.add(v, priority(v, deleted));
+		}
+		final IntArrayList[] ups = new IntArrayList[n];
+		int next_rank = 0;
+		while (!order.isEmpty()) {
+			final int v = order.poll();
+			final double p = priority(v, deleted);
+			if (!order.isEmpty() && p > order.peekKey()) {
+				order.add(v, p);
+				continue;
+			}
+			// remaining edges of v all go to higher ranked nodes
+			ups[v] = new IntArrayList(adj[v].size());
+			adj[v].forEachValue(ups[v]::add);
+			contract(v, false);
+			contracted[v] = true;
+			rank[v] = next_rank++;
+			adj[v].forEachKey(u -> {
+				adj[u].remove(v);
+				deleted[u]++;
+			});
+			adj[v] = null;
+		}
+
+		// upward graph
+		up_offsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			up_offsets[v + 1] = up_offsets[v] + ups[v].size();
+		}
+		up_edges = new int[up_offsets[n]];
+		for (int v = 0; v < n; v++) {
+			for (int i = 0; i < ups[v].size(); i++) {
+				up_edges[up_offsets[v] + i] = ups[v].get(i);
+			}
+		}
+		// free work state
+		adj = null;
+		contracted = null;
+		w_dist = null;
+		w_touched = null;
+		w_heap = null;
+	}
+
+	// edge difference plus deleted neighbours
+	private double priority(final int v, final int[] deleted) {
+		return contract(v, true) - adj[v].size() + deleted[v];
+	}
+
+	// add shortcuts needed to contract v, returns number of shortcuts
+	// (only counts them if simulate is true)
+	private int contract(final int v, final boolean simulate) {
+		final int[] nbrs = adj[v].keysView().toArray();
+		int shortcuts = 0;
+		for (int i = 0; i < nbrs.length; i++) {
+			final int u = nbrs[i];
+			final int e_uv = adj[v].get(u);
+			// cost bound of witness search from u
+			double max = 0.0;
+			for (int j = i + 1; j < nbrs.length; j++) {
+				max = Math.max(max, edge_weights[e_uv] + edge_weights[adj[v].get(nbrs[j])]);
+			}
+			if (i + 1 == nbrs.length) {
+				break;
+			}
+			witnessSearch(u, v, max);
+			for (int j = i + 1; j < nbrs.length; j++) {
+				final int w = nbrs[j];
+				final int e_vw = adj[v].get(w);
+				final double via = edge_weights[e_uv] + edge_weights[e_vw];
+				// witness path without v exists
+				if (w_dist[w] <= via) {
+					continue;
+				}
+				shortcuts++;
+				if (!simulate) {
+					final int id = addEdge(u, w, via, -1, v, e_uv, e_vw);
+					adj[u].put(w, id);
+					adj[w].put(u, id);
+				}
+			}
+		}
+		return shortcuts;
+	}
+
+	// bounded djkstra from u on remaining nodes except v, costs are left in w_dist
+	private void witnessSearch(final int u, final int v, final double max) {
+		for (int i = 0; i < w_touched.size(); i++) {
+			w_dist[w_touched.get(i)] = Double.POSITIVE_INFINITY;
+		}
+		w_touched.clear();
+		w_heap.clear();
+		w_dist[u] = 0.0;
+		w_touched.add(u);
+		w_heap.add(u, 0.0);
+		int settled = 0;
+		while (!w_heap.isEmpty() && w_heap.peekKey() <= max && settled++ < WITNESS_SETTLED_LIMIT) {
+			final int x = w_heap.poll();
+			final double d_x = w_dist[x];
+			adj[x].forEachKeyValue((y, e) -> {
+				if (y == v || contracted[y]) {
+					return;
+				}
+				final double d = d_x + edge_weights[e];
+				if (d < w_dist[y]) {
+					if (w_dist[y] == Double.POSITIVE_INFINITY) {
+						w_touched.add(y);
+						w_dist[y] = d;
+						w_heap.add(y, d);
+					} else {
+						w_dist[y] = d;
+						if (w_heap.contains(y)) {
+							w_heap.decreaseKey(y, d);
+						} else {
+							w_heap.add(y, d);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private int addEdge(final int from, final int to, final double weight, final long rel, final int mid, final int child1, final int child2) {
+		if (edge_count == edge_from.length) {
+			final int m = edge_count * 2;
+			edge_from = Arrays.copyOf(edge_from, m);
+			edge_to = Arrays.copyOf(edge_to, m);
+			edge_weights = Arrays.copyOf(edge_weights, m);
+			edge_rels = Arrays.copyOf(edge_rels, m);
+			edge_mid = Arrays.copyOf(edge_mid, m);
+			edge_child1 = Arrays.copyOf(edge_child1, m);
+			edge_child2 = Arrays.copyOf(edge_child2, m);
+		}
+		final int id = edge_count++;
+		edge_from[id] = from;
+		edge_to[id] = to;
+		edge_weights[id] = weight;
+		edge_rels[id] = rel;
+		edge_mid[id] = mid;
+		edge_child1[id] = child1;
+		edge_child2[id] = child2;
+		if (mid >= 0) {
+			shortcut_count++;
+		}
+		return id;
+	}
+
+	// upward search graph as Adjacency: relationship ids are CH edge ids
+	private final Adjacency upward = (node_id, visitor) -> {
+		final int v = (int) node_id;
+		for (int i = up_offsets[v]; i < up_offsets[v + 1]; i++) {
+			final int e = up_edges[i];
+			visitor.visit(e, edge_from[e] == v ? edge_to[e] : edge_from[e], edge_weights[e]);
+		}
+	};
+
+	// shortest path between node indexes: cost and Neo4j relationship ids, null if no route
+	public Route query(final int from, final int to) {
+		return query(from, to, new Counters());
+	}
+
+	public Route query(final int from, final int to, final Counters counters) {
+		final Dijkstra sp_f = new Dijkstra(upward, from, null, counters);
+		final Dijkstra sp_t = new Dijkstra(upward, to, null, counters);
+		int min_id = -1;
+		double total_cost = Double.POSITIVE_INFINITY;
+		while (true) {
+			// each side stops when it cannot find lower cost
+			final double top_f = sp_f.isEmpty() ? Double.POSITIVE_INFINITY : sp_f.peekCost();
+			final double top_t = sp_t.isEmpty() ? Double.POSITIVE_INFINITY : sp_t.peekCost();
+			if (Math.min(top_f, top_t) >= total_cost || Math.min(top_f, top_t) == Double.POSITIVE_INFINITY) {
+				break;
+			}
+			final boolean forward = top_f <= top_t;
+			final Dijkstra sp = forward ? sp_f : sp_t;
+			final Dijkstra other = forward ? sp_t : sp_f;
+			final int slot = sp.poll();
+			final int o_slot = other.slotOf(sp.nodeId(slot));
+			if (o_slot >= 0 && total_cost > sp.cost(slot) + other.cost(o_slot)) {
+				min_id = (int) sp.nodeId(slot);
+				total_cost = sp.cost(slot) + other.cost(o_slot);
+			}
+			sp.expand(slot);
+		}
+		if (min_id < 0) {
+			return null;
+		}
+		// unpack up-path from from-side and down-path to to-side
+		final LongArrayList rels = new LongArrayList();
+		final long[] f_edges = sp_f.path(sp_f.slotOf(min_id));
+		int cur = from;
+		for (final long e : f_edges) {
+			unpack((int) e, cur, rels);
+			cur = other((int) e, cur);
+		}
+		final long[] t_edges = sp_t.path(sp_t.slotOf(min_id));
+		for (int i = t_edges.length - 1; i >= 0; i--) {
+			final int e = (int) t_edges[i];
+			unpack(e, cur, rels);
+			cur = other(e, cur);
+		}
+		return new Route(total_cost, rels.toArray());
+	}
+
+	private int other(final int e, final int v) {
+		return edge_from[e] == v ? edge_to[e] : edge_from[e];
+	}
+
+	// append relationship ids of edge e traversed from node start
+	private void unpack(final int e, final int start, final LongArrayList rels) {
+		if (edge_mid[e] < 0) {
+			rels.add(edge_rels[e]);
+			return;
+		}
+		// child1 connects edge_from with mid, child2 connects mid with edge_to
+		if (start == edge_from[e]) {
+			unpack(edge_child1[e], start, rels);
+			unpack(edge_child2[e], edge_mid[e], rels);
+		} else {
+			unpack(edge_child2[e], start, rels);
+			unpack(edge_child1[e], edge_mid[e], rels);
+		}
+	}
+
+	public int shortcutCount() {
+		return shortcut_count;
+	}
+
+	// result of query
+	public static class Route {
+		public final double cost;
+		public final long[] rel_ids;
+
+		public Route(final double cost, final long[] rel_ids) {
+			this.cost = cost;
+			this.rel_ids = rel_ids;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package org.ggszk.ext_sample;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of relationship id -> cost
+ *
+ * Set-associative: a relationship id hashes to one set of WAYS entries, and
+ * a full set evicts by CLOCK (second chance). Sets are guarded by striped locks.
+ * Invalidation bumps a version first, and put only stores a value read under
+ * the current version, so a cost read before a commit can never be cached after
+ * that commit has invalidated it.
+ */
+public class CostCache {
+	// the property cached
+	public static final String PROPERTY = Dijkstra.COST_PROPERTY;
+	// entries per set
+	private static final int WAYS = 4;
+	private static final int STRIPES = 64;
+
+	private final int sets;
+	// relationship id + 1 (0 for empty entry)
+	private final long[] keys;
+	private final double[] values;
+	// CLOCK reference bits and hand of each set
+	private final boolean[] referenced;
+	private final int[] hands;
+	private final Object[] locks = new Object[STRIPES];
+	private final AtomicLong version = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public CostCache(final int capacity) {
+		// number of sets is a power of two
+		int s = 1;
+		while (s * WAYS < capacity) {
+			s <<= 1;
+		}
+		this.sets = s;
+		this.keys = new long[s * WAYS];
+		this.values = new double[s * WAYS];
+		this.referenced = new boolean[s * WAYS];
+		this.hands = new int[s];
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	// version to pass to put, read it before reading the cost from the store
+	public long version() {
+		return version.get();
+	}
+
+	// cached cost, NaN if not cached
+	public double get(final long rel_id) {
+		final int set = set(rel_id);
+		synchronized (locks[set & (STRIPES - 1)]) {
+			for (int i = set * WAYS; i < (set + 1) * WAYS; i++) {
+				if (keys[i] == rel_id + 1) {
+					referenced[i] = true;
+					hits.increment();
+					return values[i];
+				}
+			}
+		}
+		misses.increment();
+		return Double.NaN;
+	}
+
+	// cache cost read from the store under version (ignored if invalidated since)
+	public void put(final long rel_id, final double cost, final long read_version) {
+		final int set = set(rel_id);
+		synchronized (locks[set & (STRIPES - 1)]) {
+			if (version.get() != read_version) {
+				return;
+			}
+			final int base = set * WAYS;
+			int empty = -1;
+			for (int i = base; i < base + WAYS; i++) {
+				if (keys[i] == rel_id + 1) {
+					values[i] = cost;
+					return;
+				}
+				if (keys[i] == 0 && empty < 0) {
+					empty = i;
+				}
+			}
+			if (empty < 0) {
+				// CLOCK: skip referenced entries once
+				while (referenced[base + hands[set]]) {
+					referenced[base + hands[set]] = false;
+					hands[set] = (hands[set] + 1) % WAYS;
+				}
+				empty = base + hands[set];
+				hands[set] = (hands[set] + 1) % WAYS;
+				evictions.increment();
+			}
+			keys[empty] = rel_id + 1;
+			values[empty] = cost;
+			referenced[empty] = false;
+		}
+	}
+
+	// start invalidation: later puts of costs read before this are ignored
+	public void beginInvalidation() {
+		version.incrementAndGet();
+	}
+
+	// remove relationship from cache (call beginInvalidation first)
+	public void invalidate(final long rel_id) {
+		final int set = set(rel_id);
+		synchronized (locks[set & (STRIPES - 1)]) {
+			for (int i = set * WAYS; i < (set + 1) * WAYS; i++) {
+				if (keys[i] == rel_id + 1) {
+					keys[i] = 0;
+					referenced[i] = false;
+					invalidations.increment();
+				}
+			}
+		}
+	}
+
+	private int set(final long rel_id) {
+		// mix bits so that consecutive ids spread over sets
+		long h = rel_id * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) h & (sets - 1);
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	// number of cached entries
+	public long size() {
+		long size = 0;
+		for (int set = 0; set < sets; set++) {
+			synchronized (locks[set & (STRIPES - 1)]) {
+				for (int i = set * WAYS; i < (set + 1) * WAYS; i++) {
+					if (keys[i] != 0) {
+						size++;
+					}
+				}
+			}
+		}
+		return size;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public long invalidations() {
+		return invalidations.sum();
+	}
+}
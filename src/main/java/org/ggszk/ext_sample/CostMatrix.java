@@ -0,0 +1,91 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Many-to-many shortest path costs
+ *
+ * One djkstra per origin, stopped when all targets are fixed. Origins are
+ * searched in parallel on the Workers pool, each in its own read transaction.
+ * Relationships are followed as given by the TraversalSpec. Targets known to
+ * be in another component than the origin are not searched for.
+ */
+public class CostMatrix {
+	// one cell of the matrix
+	public static class Entry {
+		public final long from;
+		public final long to;
+		public final double cost;
+		// relationship ids from origin to target, null if paths are not requested
+		public final long[] rel_ids;
+
+		public Entry(final long from, final long to, final double cost, final long[] rel_ids) {
+			this.from = from;
+			this.to = to;
+			this.cost = cost;
+			this.rel_ids = rel_ids;
+		}
+	}
+
+	// costs from every origin to every target, in input order (unreachable pairs are left out)
+	// (work of all searches is added to counters; components may be null)
+	public static List<Entry> compute(final GraphDatabaseService db, final TraversalSpec spec, final long[] from_ids, final long[] to_ids, final boolean with_paths,
+			final ComponentIndex components, final Counters counters) {
+		final List<Future<LongObjectHashMap<Entry>>> futures = new ArrayList<>();
+		final Counters[] search_counters = new Counters[from_ids.length];
+		for (int i = 0; i < from_ids.length; i++) {
+			final long from_id = from_ids[i];
+			final Counters c = search_counters[i] = new Counters();
+			futures.add(Workers.pool.submit(() -> search(db, spec, from_id, to_ids, with_paths, components, c)));
+		}
+		final List<Entry> entries = new ArrayList<>();
+		for (final LongObjectHashMap<Entry> found : Workers.join(futures)) {
+			for (final long to_id : to_ids) {
+				final Entry entry = found.get(to_id);
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+		}
+		// searches are done (joined)
+		for (final Counters c : search_counters) {
+			counters.add(c);
+		}
+		return entries;
+	}
+
+	// djkstra from one origin until all targets are fixed
+	private static LongObjectHashMap<Entry> search(final GraphDatabaseService db, final TraversalSpec spec, final long from_id, final long[] to_ids, final boolean with_paths,
+			final ComponentIndex components, final Counters counters) {
+		final LongObjectHashMap<Entry> found = new LongObjectHashMap<>();
+		try (Transaction tx = db.beginTx(); KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true)) {
+			// check that origin exists
+			db.getNodeById(from_id);
+			final LongHashSet remaining = new LongHashSet();
+			for (final long to_id : to_ids) {
+				if (components == null || !components.disconnected(from_id, to_id)) {
+					remaining.add(to_id);
+				}
+			}
+			final Dijkstra sp = new Dijkstra(adjacency, from_id, null, counters);
+			while (!remaining.isEmpty() && !sp.isEmpty()) {
+				// top node of queue's cost is fixed
+				final int slot = sp.poll();
+				final long id = sp.nodeId(slot);
+				if (remaining.remove(id)) {
+					found.put(id, new Entry(from_id, id, sp.cost(slot), with_paths ? sp.path(slot) : null));
+				}
+				sp.expand(slot);
+			}
+			tx.success();
+		}
+		return found;
+	}
+}
@@ -0,0 +1,48 @@
+package org.ggszk.ext_sample;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Work counters of one procedure call
+ *
+ * Plain fields updated by the search engines of the call (single thread),
+ * added to the shared Metrics of the procedure when the call ends.
+ */
+public class Counters {
+	public long nodes_settled = 0;
+	public long relationships_expanded = 0;
+	public long heap_pushes = 0;
+	public long decrease_keys = 0;
+	public long peak_frontier = 0;
+	// System.nanoTime() at call start
+	public final long start = System.nanoTime();
+
+	// frontier has size elements
+	public void frontier(final long size) {
+		if (size > peak_frontier) {
+			peak_frontier = size;
+		}
+	}
+
+	// add counters of a sub search (e.g. run by another thread)
+	public void add(final Counters other) {
+		nodes_settled += other.nodes_settled;
+		relationships_expanded += other.relationships_expanded;
+		heap_pushes += other.heap_pushes;
+		decrease_keys += other.decrease_keys;
+		frontier(other.peak_frontier);
+	}
+
+	// profile column of output
+	public Map<String, Object> toMap() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put("nodesSettled", nodes_settled);
+		map.put("relationshipsExpanded", relationships_expanded);
+		map.put("heapPushes", heap_pushes);
+		map.put("decreaseKeys", decrease_keys);
+		map.put("peakFrontier", peak_frontier);
+		map.put("timeMs", (System.nanoTime() - start) / 1e6);
+		return map;
+	}
+}
@@ -0,0 +1,250 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongDoubleHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Parallel single source shortest paths by delta-stepping
+ *
+ * Nodes are kept in buckets of cost width delta. The lowest bucket is emptied
+ * by relaxing light relationships (cost <= delta) of its nodes until no node
+ * falls back into it, then heavy ones once. Each relaxation round is split
+ * into chunks expanded on at most concurrency threads of the Workers pool,
+ * each chunk into its own buffer of requests; the buffers are merged in chunk
+ * order between rounds, so costs and parents are only written by the calling
+ * thread and workers only read them.
+ * The tree is computed when the stream asks for the first node, and nodes are
+ * given bucket by bucket in order of cost.
+ */
+public class DeltaStepping extends ShortestPathTree {
+	// minimum number of frontier nodes in one chunk
+	private static final int MIN_CHUNK = 256;
+
+	private final GraphDatabaseService db;
+	private final TraversalSpec spec;
+	private final long start_id;
+	private final double delta;
+	private final int concurrency;
+	// cost and parent node id of nodes found so far
+	private final LongDoubleHashMap costs = new LongDoubleHashMap();
+	private final LongLongHashMap parents = new LongLongHashMap();
+	// bucket index -> node ids (may contain nodes which moved to a lower bucket)
+	private final TreeMap<Long, LongArrayList> buckets = new TreeMap<>();
+	// settled nodes in output order
+	private final LongArrayList order = new LongArrayList();
+	private int pos = 0;
+	private boolean computed = false;
+	// work counters of the procedure call (relationships are counted by workers)
+	private final Counters counters;
+	private final LongAdder expanded = new LongAdder();
+	private final Budget budget;
+	// status of the last node, and the current node
+	private String last_status = Budget.OK;
+	private long cur_id;
+
+	// relaxation requests of one chunk: node, cost through parent, parent node
+	private static class Requests {
+		final LongArrayList nodes = new LongArrayList();
+		final DoubleArrayList costs = new DoubleArrayList();
+		final LongArrayList parents = new LongArrayList();
+	}
+
+	public DeltaStepping(final GraphDatabaseService db, final TraversalSpec spec, final long start_id, final double delta, final int concurrency,
+			final Counters counters, final Budget budget) {
+		if (!(delta > 0.0)) {
+			throw new IllegalArgumentException("delta must be positive: " + delta);
+		}
+		this.db = db;
+		this.spec = spec;
+		this.start_id = start_id;
+		this.delta = delta;
+		this.concurrency = Math.max(1, concurrency);
+		this.counters = counters;
+		this.budget = budget;
+	}
+
+	@Override
+	public boolean tryAdvance(final LongConsumer action) {
+		if (!computed) {
+			compute();
+			computed = true;
+		}
+		if (pos == order.size()) {
+			return false;
+		}
+		cur_id = order.get(pos++);
+		action.accept(cur_id);
+		return true;
+	}
+
+	@Override
+	public double cost() {
+		return costs.get(cur_id);
+	}
+
+	@Override
+	public long parentId() {
+		return parents.get(cur_id);
+	}
+
+	@Override
+	public String status() {
+		return pos == order.size() ? last_status : Budget.OK;
+	}
+
+	@Override
+	public long source() {
+		return start_id;
+	}
+
+	private void compute() {
+		costs.put(start_id, 0.0);
+		parents.put(start_id, NodeTraversal.NO_PARENT);
+		bucket(start_id, 0.0);
+		while (!buckets.isEmpty()) {
+			final long index = buckets.firstKey();
+			// nodes left cost at least the lower end of the bucket
+			String over = budget.check(order.size(), index * delta);
+			if (over != null) {
+				last_status = over;
+				return;
+			}
+			// nodes settled in this bucket
+			final LongHashSet settled = new LongHashSet();
+			final LongArrayList settled_order = new LongArrayList();
+			// light relationships until the bucket stays empty
+			LongArrayList bucket;
+			while ((bucket = buckets.remove(index)) != null) {
+				final LongHashSet seen = new LongHashSet();
+				final LongArrayList frontier = new LongArrayList();
+				for (int i = 0; i < bucket.size(); i++) {
+					final long id = bucket.get(i);
+					// skip nodes moved to a lower bucket, and duplicates
+					if (index(costs.get(id)) == index && seen.add(id)) {
+						frontier.add(id);
+						if (settled.add(id)) {
+							settled_order.add(id);
+						}
+					}
+				}
+				counters.frontier(frontier.size());
+				relax(frontier.toArray(), true);
+				// the guard and clock are checked between rounds too
+				over = budget.check(order.size(), index * delta);
+				if (over != null) {
+					last_status = over;
+					return;
+				}
+			}
+			// costs of the bucket are fixed
+			final long[] fixed = settled_order.toArray();
+			if (!emit(fixed)) {
+				return;
+			}
+			relax(fixed, false);
+		}
+	}
+
+	// add settled nodes in order of cost, false if the budget ran out
+	private boolean emit(final long[] fixed) {
+		final Long[] sorted = new Long[fixed.length];
+		for (int i = 0; i < fixed.length; i++) {
+			sorted[i] = fixed[i];
+		}
+		Arrays.sort(sorted, (a, b) -> Double.compare(costs.get(a), costs.get(b)));
+		for (final long id : sorted) {
+			final String over = budget.check(order.size(), costs.get(id));
+			if (over != null) {
+				last_status = over;
+				return false;
+			}
+			order.add(id);
+			counters.nodes_settled++;
+		}
+		return true;
+	}
+
+	// relax light or heavy relationships of nodes on the Workers pool and merge the requests
+	private void relax(final long[] nodes, final boolean light) {
+		// (at most concurrency threads expand chunks at a time)
+		final int chunks = Math.max(1, Math.min(concurrency * 4, nodes.length / MIN_CHUNK));
+		for (final Requests requests : Workers.chunks(chunks, concurrency,
+				c -> expand(nodes, (int) ((long) nodes.length * c / chunks), (int) ((long) nodes.length * (c + 1) / chunks), light))) {
+			for (int i = 0; i < requests.nodes.size(); i++) {
+				final long id = requests.nodes.get(i);
+				final double cost = requests.costs.get(i);
+				final boolean found = costs.containsKey(id);
+				if (!found || cost < costs.get(id)) {
+					costs.put(id, cost);
+					parents.put(id, requests.parents.get(i));
+					bucket(id, cost);
+					if (found) {
+						counters.decrease_keys++;
+					} else {
+						counters.heap_pushes++;
+					}
+				}
+			}
+		}
+		counters.relationships_expanded = expanded.sum();
+	}
+
+	// requests of light or heavy relationships of nodes[from..to) which lower a cost
+	// (costs are only read while workers run)
+	private Requests expand(final long[] nodes, final int from, final int to, final boolean light) {
+		final Requests requests = new Requests();
+		try (Transaction tx = db.beginTx(); KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true)) {
+			final long[] count = new long[1];
+			// node being expanded and its cost
+			final long[] current = new long[1];
+			final double[] current_cost = new double[1];
+			final Adjacency.Visitor visitor = (rel_id, n_id, cost) -> {
+				count[0]++;
+				if ((cost <= delta) == light) {
+					final double n_cost = current_cost[0] + cost;
+					if (n_cost < costs.getIfAbsent(n_id, Double.POSITIVE_INFINITY)) {
+						requests.nodes.add(n_id);
+						requests.costs.add(n_cost);
+						requests.parents.add(current[0]);
+					}
+				}
+			};
+			for (int i = from; i < to; i++) {
+				current[0] = nodes[i];
+				current_cost[0] = costs.get(nodes[i]);
+				adjacency.expand(nodes[i], visitor);
+			}
+			expanded.add(count[0]);
+			tx.success();
+		}
+		return requests;
+	}
+
+	private long index(final double cost) {
+		return (long) Math.floor(cost / delta);
+	}
+
+	private void bucket(final long id, final double cost) {
+		buckets.computeIfAbsent(index(cost), i -> new LongArrayList()).add(id);
+	}
+
+	// default delta: mean cost of the relationships of the start node (1.0 if it has none)
+	public static double defaultDelta(final Adjacency adjacency, final long start_id) {
+		final double[] sum = new double[2];
+		adjacency.expand(start_id, (rel_id, n_id, cost) -> {
+			sum[0] += cost;
+			sum[1]++;
+		});
+		return sum[1] == 0 || sum[0] <= 0.0 ? 1.0 : sum[0] / sum[1];
+	}
+}
@@ -0,0 +1,212 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+/**
+ * One-directional Dijkstra search state
+ *
+ * Every node found gets a dense slot. Cost, parent relationship and node id
+ * are kept in parallel primitive arrays indexed by slot, and the frontier is an
+ * IndexedHeap of slots, so relaxing an edge allocates nothing.
+ * With a potential (A*), the heap is ordered by cost + potential.
+ * With several start nodes, each node also keeps the start node it is
+ * reached from (its closest one when settled).
+ */
+public class Dijkstra implements Adjacency.Visitor {
+	// Property for cost: type must be double
+	public static final String COST_PROPERTY = "cost";
+
+	// lower bound of remaining cost for A* (must be consistent)
+	public interface Potential {
+		double of(long node_id);
+	}
+
+	private final Adjacency adjacency;
+	private final Potential potential;
+	// work counters of the procedure call
+	private final Counters counters;
+	// node id -> slot
+	private final LongIntHashMap slots = new LongIntHashMap();
+	// slot -> node id
+	private long[] node_ids = new long[64];
+	// slot -> cost summation from start node
+	private double[] costs = new double[64];
+	// slot -> parent relationship id (-1 for start node)
+	private long[] parents = new long[64];
+	// slot -> parent node slot (-1 for start node)
+	private int[] parent_slots = new int[64];
+	// slot -> start node id the node is reached from
+	private long[] sources = new long[64];
+	// slot -> potential of node
+	private double[] potentials = new double[64];
+	// slot -> flag for cost fixed
+	private boolean[] done = new boolean[64];
+	private int size = 0;
+	private final IndexedHeap heap = new IndexedHeap(64);
+	// slot of the node being expanded
+	private int cur_slot = -1;
+
+	public Dijkstra(final Adjacency adjacency, final long start_id) {
+		this(adjacency, start_id, null);
+	}
+
+	public Dijkstra(final Adjacency adjacency, final long start_id, final Potential potential) {
+		this(adjacency, start_id, potential, new Counters());
+	}
+
+	public Dijkstra(final Adjacency adjacency, final long start_id, final Potential potential, final Counters counters) {
+		this(adjacency, new long[] { start_id }, potential, counters);
+	}
+
+	// search from several start nodes at once (each with cost 0)
+	public Dijkstra(final Adjacency adjacency, final long[] start_ids, final Potential potential, final Counters counters) {
+		this.adjacency = adjacency;
+		this.potential = potential;
+		this.counters = counters;
+		for (final long start_id : start_ids) {
+			if (!slots.containsKey(start_id)) {
+				final int slot = newSlot(start_id, 0.0, -1);
+				push(slot, potentials[slot]);
+			}
+		}
+	}
+
+	// true if no more nodes can be settled
+	public boolean isEmpty() {
+		return heap.isEmpty();
+	}
+
+	// cost (plus potential) of the next node to be settled
+	public double peekCost() {
+		return heap.peekKey();
+	}
+
+	// top node of queue's cost is fixed, returns its slot
+	public int poll() {
+		final int slot = heap.poll();
+		done[slot] = true;
+		counters.nodes_settled++;
+		return slot;
+	}
+
+	// get adjacent nodes and add them to queue
+	public void expand(final int slot) {
+		cur_slot = slot;
+		adjacency.expand(node_ids[slot], this);
+	}
+
+	// relax an adjacent node of the node being expanded
+	@Override
+	public void visit(final long rel_id, final long o_id, final double cost_rel) {
+		counters.relationships_expanded++;
+		final double cost = costs[cur_slot] + cost_rel;
+		// check whether the node was found
+		final int o_slot = slots.getIfAbsent(o_id, -1);
+		// not found -> 1st appearance of the node, add it to queue
+		if (o_slot < 0) {
+			final int slot = newSlot(o_id, cost, rel_id);
+			push(slot, cost + potentials[slot]);
+		}
+		// found but cost isn't fixed and has lower cost -> decrease key
+		else if (!done[o_slot] && heap.decreaseKey(o_slot, cost + potentials[o_slot])) {
+			costs[o_slot] = cost;
+			parents[o_slot] = rel_id;
+			parent_slots[o_slot] = cur_slot;
+			sources[o_slot] = sources[cur_slot];
+			counters.decrease_keys++;
+		}
+		// found and cost was fixed -> do nothing
+	}
+
+	private void push(final int slot, final double key) {
+		heap.add(slot, key);
+		counters.heap_pushes++;
+		counters.frontier(heap.size());
+	}
+
+	private int newSlot(final long node_id, final double cost, final long parent) {
+		if (size == node_ids.length) {
+			final int n = size * 2;
+			node_ids = Arrays.copyOf(node_ids, n);
+			costs = Arrays.copyOf(costs, n);
+			parents = Arrays.copyOf(parents, n);
+			parent_slots = Arrays.copyOf(parent_slots, n);
+			sources = Arrays.copyOf(sources, n);
+			potentials = Arrays.copyOf(potentials, n);
+			done = Arrays.copyOf(done, n);
+		}
+		final int slot = size++;
+		node_ids[slot] = node_id;
+		costs[slot] = cost;
+		parents[slot] = parent;
+		parent_slots[slot] = parent < 0 ? -1 : cur_slot;
+		sources[slot] = parent < 0 ? node_id : sources[cur_slot];
+		potentials[slot] = potential == null ? 0.0 : potential.of(node_id);
+		slots.put(node_id, slot);
+		return slot;
+	}
+
+	// slot of node, -1 if the node was not found yet
+	public int slotOf(final long node_id) {
+		return slots.getIfAbsent(node_id, -1);
+	}
+
+	public long nodeId(final int slot) {
+		return node_ids[slot];
+	}
+
+	public double cost(final int slot) {
+		return costs[slot];
+	}
+
+	// parent node id, NodeTraversal.NO_PARENT for the start node
+	public long parentId(final int slot) {
+		return parent_slots[slot] < 0 ? NodeTraversal.NO_PARENT : node_ids[parent_slots[slot]];
+	}
+
+	// start node id the node is reached from
+	public long source(final int slot) {
+		return sources[slot];
+	}
+
+	public boolean isDone(final int slot) {
+		return done[slot];
+	}
+
+	public Counters counters() {
+		return counters;
+	}
+
+	// number of nodes found so far
+	public int size() {
+		return size;
+	}
+
+	// relationship ids on the path from start node to a found node
+	public long[] path(final int slot) {
+		int len = 0;
+		for (int s = slot; parent_slots[s] >= 0; s = parent_slots[s]) {
+			len++;
+		}
+		final long[] rel_ids = new long[len];
+		for (int s = slot; parent_slots[s] >= 0; s = parent_slots[s]) {
+			rel_ids[--len] = parents[s];
+		}
+		return rel_ids;
+	}
+
+	// node ids on the path from start node to a found node (both included)
+	public long[] nodePath(final int slot) {
+		int len = 1;
+		for (int s = slot; parent_slots[s] >= 0; s = parent_slots[s]) {
+			len++;
+		}
+		final long[] ids = new long[len];
+		for (int s = slot; s >= 0; s = parent_slots[s]) {
+			ids[--len] = node_ids[s];
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,139 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int slots ordered by a double key, with decrease-key
+ *
+ * Each slot can be in the heap at most once. Its position is kept in an index
+ * array, so decreaseKey re-sifts the slot instead of leaving the order stale.
+ */
+public class IndexedHeap {
+	// heap position -> slot
+	private int[] heap;
+	// slot -> heap position (-1 if not in heap)
+	private int[] pos;
+	// slot -> key
+	private double[] keys;
+	private int size = 0;
+
+	public IndexedHeap(final int capacity) {
+		heap = new int[Math.max(capacity, 16)];
+		pos = new int[heap.length];
+		keys = new double[heap.length];
+		Arrays.fill(pos, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(final int slot) {
+		return slot < pos.length && pos[slot] >= 0;
+	}
+
+	// add slot to heap (slot must not be in heap)
+	public void add(final int slot, final double key) {
+		ensureSlot(slot);
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		keys[slot] = key;
+		heap[size] = slot;
+		pos[slot] = size;
+		siftUp(size++);
+	}
+
+	// lower the key of a slot in heap, returns false if key is not lower
+	public boolean decreaseKey(final int slot, final double key) {
+		if (key >= keys[slot]) {
+			return false;
+		}
+		keys[slot] = key;
+		siftUp(pos[slot]);
+		return true;
+	}
+
+	// remove all slots
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			pos[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	// slot with minimum key
+	public int peek() {
+		return heap[0];
+	}
+
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	// remove and return slot with minimum key
+	public int poll() {
+		final int top = heap[0];
+		pos[top] = -1;
+		if (--size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void ensureSlot(final int slot) {
+		if (slot >= pos.length) {
+			final int n = Math.max(slot + 1, pos.length * 2);
+			final int old = pos.length;
+			pos = Arrays.copyOf(pos, n);
+			keys = Arrays.copyOf(keys, n);
+			Arrays.fill(pos, old, n, -1);
+		}
+	}
+
+	private void siftUp(int i) {
+		final int slot = heap[i];
+		final double key = keys[slot];
+		while (i > 0) {
+			final int p = (i - 1) >>> 1;
+			final int p_slot = heap[p];
+			if (keys[p_slot] <= key) {
+				break;
+			}
+			heap[i] = p_slot;
+			pos[p_slot] = i;
+			i = p;
+		}
+		heap[i] = slot;
+		pos[slot] = i;
+	}
+
+	private void siftDown(int i) {
+		final int slot = heap[i];
+		final double key = keys[slot];
+		final int half = size >>> 1;
+		while (i < half) {
+			int c = 2 * i + 1;
+			int c_slot = heap[c];
+			final int r = c + 1;
+			if (r < size && keys[heap[r]] < keys[c_slot]) {
+				c = r;
+				c_slot = heap[r];
+			}
+			if (key <= keys[c_slot]) {
+				break;
+			}
+			heap[i] = c_slot;
+			pos[c_slot] = i;
+			i = c;
+		}
+		heap[i] = slot;
+		pos[slot] = i;
+	}
+}
@@ -0,0 +1,334 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Procedures run in the background, with results kept for paging
+ *
+ * A job calls one procedure of this extension (example.*, not example.jobs.*)
+ * with positional arguments, in its own transaction on a bounded executor:
+ * at most concurrency jobs run and queue_size wait, more are rejected. Rows are
+ * encoded in a RowBuffer with nodes and relationships replaced by their ids and
+ * paths by their id lists, up to max_rows and max_bytes per job. Cancel terminates the transaction
+ * of a running job (procedures stop at their next guard check; the job is
+ * CANCELLING until then), removes a queued one, and discards a finished one.
+ * Finished jobs beyond MAX_FINISHED are discarded, oldest first.
+ */
+public class Jobs {
+	// state of a job
+	public static final String QUEUED = "QUEUED";
+	public static final String RUNNING = "RUNNING";
+	public static final String DONE = "DONE";
+	public static final String FAILED = "FAILED";
+	// cancelled while running, until the procedure stops
+	public static final String CANCELLING = "CANCELLING";
+	public static final String CANCELLED = "CANCELLED";
+	// finished jobs kept
+	private static final int MAX_FINISHED = 64;
+
+	// one submitted procedure call
+	public static class Job {
+		public final long id;
+		public final String procedure;
+		private final long submitted = System.currentTimeMillis();
+		private String status = QUEUED;
+		private String error;
+		private boolean truncated = false;
+		private long started = 0;
+		private long finished = 0;
+		private String[] columns = new String[0];
+		private final RowBuffer rows;
+		// transaction while running, future until finished
+		private Transaction tx;
+		private Future<?> future;
+
+		Job(final long id, final String procedure, final int max_bytes) {
+			this.id = id;
+			this.procedure = procedure;
+			this.rows = new RowBuffer(max_bytes);
+		}
+
+		public synchronized String status() {
+			return status;
+		}
+
+		// message of the failure, null unless FAILED
+		public synchronized String error() {
+			return error;
+		}
+
+		public synchronized long rowCount() {
+			return rows.rowCount();
+		}
+
+		// size of the encoded rows
+		public synchronized long bytes() {
+			return rows.byteSize();
+		}
+
+		// true if rows beyond max_rows or max_bytes were dropped
+		public synchronized boolean truncated() {
+			return truncated;
+		}
+
+		// wall time running so far (0 while queued)
+		public synchronized long elapsedMs() {
+			return started == 0 ? 0 : (finished == 0 ? System.currentTimeMillis() : finished) - started;
+		}
+
+		public long submitted() {
+			return submitted;
+		}
+
+		// rows offset..offset + limit - 1 found so far, as column -> value
+		public synchronized List<Map<String, Object>> rows(final long offset, final long limit) {
+			final List<Map<String, Object>> page = new ArrayList<>();
+			for (long i = Math.max(0, offset); i < rows.rowCount() && i < offset + limit; i++) {
+				final Object[] values = rows.get((int) i, columns.length);
+				final Map<String, Object> row = new LinkedHashMap<>();
+				for (int c = 0; c < columns.length; c++) {
+					row.put(columns[c], values[c]);
+				}
+				page.add(row);
+			}
+			return page;
+		}
+
+		// true once the job no longer runs or waits in the executor
+		synchronized boolean isFinished() {
+			return finished != 0;
+		}
+
+		private synchronized void finish(final String status, final String error) {
+			// (a cancelled job ends as cancelled)
+			if (CANCELLING.equals(this.status)) {
+				this.status = CANCELLED;
+			} else {
+				this.status = status;
+				this.error = error;
+			}
+			this.finished = System.currentTimeMillis();
+		}
+	}
+
+	private final GraphDatabaseService db;
+	private final int max_rows;
+	private final int max_bytes;
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong next_id = new AtomicLong();
+	// jobs by id, in order of submission
+	private final Map<Long, Job> jobs = new LinkedHashMap<>();
+
+	public Jobs(final GraphDatabaseService db, final int concurrency, final int queue_size, final int max_rows, final int max_bytes) {
+		this.db = db;
+		this.max_rows = max_rows;
+		this.max_bytes = max_bytes;
+		final AtomicInteger threads = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue_size), r -> {
+			final Thread thread = new Thread(r, "example-jobs-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// start a call of procedure with args, in the background
+	public Job submit(final String procedure, final List<Object> args) {
+		if (!procedure.matches("example(\\.[A-Za-z0-9_]+)+") || procedure.startsWith("example.jobs.")) {
+			throw new IllegalArgumentException("Only procedures example.* (except example.jobs.*) can be submitted: " + procedure);
+		}
+		final Map<String, Object> params = new HashMap<>();
+		final StringBuilder query = new StringBuilder("CALL ").append(procedure).append('(');
+		for (int i = 0; i < args.size(); i++) {
+			query.append(i == 0 ? "$p" : ", $p").append(i);
+			params.put("p" + i, args.get(i));
+		}
+		query.append(')');
+		final Job job = new Job(next_id.incrementAndGet(), procedure, max_bytes);
+		synchronized (jobs) {
+			try {
+				job.future = executor.submit(() -> run(job, query.toString(), params));
+			} catch (final RejectedExecutionException e) {
+				throw new IllegalStateException("Too many jobs: " + executor.getActiveCount() + " running and " + executor.getQueue().size() + " queued");
+			}
+			jobs.put(job.id, job);
+			evictFinished();
+		}
+		return job;
+	}
+
+	private void run(final Job job, final String query, final Map<String, Object> params) {
+		String status = DONE;
+		String error = null;
+		try (Transaction tx = db.beginTx()) {
+			synchronized (job) {
+				if (CANCELLED.equals(job.status)) {
+					return;
+				}
+				job.status = RUNNING;
+				job.started = System.currentTimeMillis();
+				job.tx = tx;
+			}
+			try {
+				try (Result result = db.execute(query, params)) {
+					final List<String> columns = result.columns();
+					synchronized (job) {
+						job.columns = columns.toArray(new String[0]);
+					}
+					while (result.hasNext()) {
+						final Map<String, Object> row = result.next();
+						final Object[] values = new Object[columns.size()];
+						for (int c = 0; c < values.length; c++) {
+							values[c] = compact(row.get(columns.get(c)));
+						}
+						synchronized (job) {
+							if (job.rows.rowCount() >= max_rows || !job.rows.add(values)) {
+								job.truncated = true;
+								break;
+							}
+						}
+					}
+				}
+			} finally {
+				// not terminated once closed (the kernel transaction is reused)
+				synchronized (job) {
+					job.tx = null;
+				}
+			}
+			tx.success();
+		} catch (final RuntimeException e) {
+			status = FAILED;
+			error = e.getMessage() == null ? e.toString() : e.getMessage();
+		}
+		// (after the transaction is closed)
+		job.finish(status, error);
+	}
+
+	// value of a row without entities: ids instead of nodes and relationships
+	public static Object compact(final Object value) {
+		if (value instanceof Node) {
+			return ((Node) value).getId();
+		}
+		if (value instanceof Relationship) {
+			return ((Relationship) value).getId();
+		}
+		if (value instanceof Path) {
+			final Path path = (Path) value;
+			final List<Long> node_ids = new ArrayList<>(path.length() + 1);
+			path.nodes().forEach(n -> node_ids.add(n.getId()));
+			final List<Long> rel_ids = new ArrayList<>(path.length());
+			path.relationships().forEach(r -> rel_ids.add(r.getId()));
+			final Map<String, Object> ids = new LinkedHashMap<>();
+			ids.put("nodeIds", node_ids);
+			ids.put("relationshipIds", rel_ids);
+			return ids;
+		}
+		if (value instanceof List) {
+			final List<Object> list = new ArrayList<>();
+			for (final Object v : (List<?>) value) {
+				list.add(compact(v));
+			}
+			return list;
+		}
+		if (value instanceof Map) {
+			final Map<String, Object> map = new LinkedHashMap<>();
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(String.valueOf(entry.getKey()), compact(entry.getValue()));
+			}
+			return map;
+		}
+		return value;
+	}
+
+	// job by id
+	public Job get(final long id) {
+		synchronized (jobs) {
+			final Job job = jobs.get(id);
+			if (job == null) {
+				throw new IllegalArgumentException("No job " + id);
+			}
+			return job;
+		}
+	}
+
+	// all jobs in order of submission
+	public List<Job> all() {
+		synchronized (jobs) {
+			return new ArrayList<>(jobs.values());
+		}
+	}
+
+	// stop a queued or running job, or discard a finished one
+	// (the jobs lock is never taken while a job lock is held)
+	public Job cancel(final long id) {
+		final Job job = get(id);
+		synchronized (job) {
+			if (!job.isFinished()) {
+				if (job.started != 0) {
+					// finished by its worker when the procedure stops
+					job.status = CANCELLING;
+					if (job.tx != null) {
+						job.tx.terminate();
+					}
+				} else {
+					job.status = CANCELLED;
+					job.future.cancel(false);
+					job.finished = System.currentTimeMillis();
+				}
+				return job;
+			}
+		}
+		synchronized (jobs) {
+			jobs.remove(id);
+		}
+		return job;
+	}
+
+	// stop all jobs (extension stopped)
+	public void shutdown() {
+		executor.shutdownNow();
+		for (final Job job : all()) {
+			synchronized (job) {
+				if (job.tx != null) {
+					job.tx.terminate();
+				}
+			}
+		}
+	}
+
+	// (jobs lock held)
+	private void evictFinished() {
+		int finished = 0;
+		final Collection<Job> values = jobs.values();
+		for (final Job job : values) {
+			if (job.isFinished()) {
+				finished++;
+			}
+		}
+		for (final Iterator<Job> it = values.iterator(); it.hasNext() && finished > MAX_FINISHED;) {
+			if (it.next().isFinished()) {
+				it.remove();
+				finished--;
+			}
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * K shortest loopless paths (Yen), as a stream of routes in order of cost
+ *
+ * The reverse shortest path tree of the target is computed once. It gives the
+ * first route, and for every spur node the tree path to the target is used as
+ * is when it avoids the removed nodes and relationships; otherwise the spur
+ * route is searched by A* with the tree costs as potential (exact lower bounds,
+ * since removing relationships only makes routes longer). Root prefixes are
+ * copied from the accepted route. Candidates are kept in a heap bounded by the
+ * number of routes still to find, and its worst cost also bounds spur searches.
+ * A route is searched only when the stream asks for it. When the budget runs
+ * out, a row without route whose cost is a lower bound ends the stream.
+ */
+public class KShortestPaths extends Spliterators.AbstractSpliterator<KShortestPaths.Route> {
+	// one route from source to target
+	public static class Route {
+		public final long[] node_ids;
+		public final long[] rel_ids;
+		// cost from source to each node of the route
+		public final double[] costs;
+		// OK, or the status of the budget for a row without route
+		public final String status;
+		private final long seq;
+
+		Route(final long[] node_ids, final long[] rel_ids, final double[] costs, final long seq) {
+			this.node_ids = node_ids;
+			this.rel_ids = rel_ids;
+			this.costs = costs;
+			this.status = Budget.OK;
+			this.seq = seq;
+		}
+
+		// row of a search stopped by its budget: no route, cost is a lower bound
+		Route(final String status, final double bound) {
+			this.node_ids = null;
+			this.rel_ids = null;
+			this.costs = new double[] { bound };
+			this.status = status;
+			this.seq = -1;
+		}
+
+		public double cost() {
+			return costs[costs.length - 1];
+		}
+	}
+
+	// thrown out of a spur search when the budget runs out
+	private static class BudgetException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final String status;
+
+		BudgetException(final String status) {
+			super(status, null, false, false);
+			this.status = status;
+		}
+	}
+
+	private final Adjacency adjacency;
+	private final Adjacency reverse;
+	private final long from_id;
+	private final long to_id;
+	private final int k;
+	private final Counters counters;
+	private final Budget budget;
+	// reverse shortest path tree of target, null until the first route is asked
+	private Dijkstra tree;
+	// routes given so far
+	private final List<Route> accepted = new ArrayList<>();
+	// candidates by cost (then by creation), and relationship ids of all routes seen
+	private final TreeSet<Route> candidates = new TreeSet<>((a, b) -> a.cost() != b.cost() ? Double.compare(a.cost(), b.cost()) : Long.compare(a.seq, b.seq));
+	private final Set<List<Long>> seen = new HashSet<>();
+	private long seq = 0;
+	private boolean stopped = false;
+
+	// reverse: adjacency with reversed directions (the same one if undirected)
+	public KShortestPaths(final Adjacency adjacency, final Adjacency reverse, final long from_id, final long to_id, final int k, final Counters counters,
+			final Budget budget) {
+		super(k, ORDERED | NONNULL | IMMUTABLE);
+		this.adjacency = adjacency;
+		this.reverse = reverse;
+		this.from_id = from_id;
+		this.to_id = to_id;
+		this.k = k;
+		this.counters = counters;
+		this.budget = budget;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super Route> action) {
+		if (stopped || accepted.size() >= k) {
+			return false;
+		}
+		Route next = null;
+		try {
+			next = accepted.isEmpty() ? first() : next();
+			if (next != null) {
+				check(next.cost());
+			}
+		} catch (final BudgetException e) {
+			// a complete next route is the cheapest left; otherwise spur nodes not searched yet
+			// may give a route cheaper than any candidate, so the next one costs at least the last route
+			stopped = true;
+			final double bound = next != null ? next.cost() : (accepted.isEmpty() ? 0.0 : accepted.get(accepted.size() - 1).cost());
+			action.accept(new Route(e.status, bound));
+			return true;
+		}
+		if (next == null) {
+			stopped = true;
+			return false;
+		}
+		accepted.add(next);
+		action.accept(next);
+		return true;
+	}
+
+	// shortest route: tree path of source
+	private Route first() {
+		tree = new Dijkstra(reverse, to_id, null, counters);
+		// (costs in the tree are to target, so only the other limits apply)
+		while (!tree.isEmpty()) {
+			check(0.0);
+			tree.expand(tree.poll());
+		}
+		final int slot = tree.slotOf(from_id);
+		if (slot < 0) {
+			return null;
+		}
+		final Route route = treeRoute(new long[] { from_id }, new long[0], new double[] { 0.0 });
+		seen.add(key(route.rel_ids));
+		return route;
+	}
+
+	// next route: spurs of the last accepted route, then the best candidate
+	private Route next() {
+		final Route last = accepted.get(accepted.size() - 1);
+		for (int i = 0; i < last.node_ids.length - 1; i++) {
+			spur(last, i);
+		}
+		return candidates.pollFirst();
+	}
+
+	// candidate deviating from route at its i-th node
+	private void spur(final Route route, final int i) {
+		final long spur_id = route.node_ids[i];
+		final double root_cost = route.costs[i];
+		// a candidate must beat the worst kept one if the heap is full
+		final double limit = candidates.size() >= k - accepted.size() ? candidates.last().cost() : Double.POSITIVE_INFINITY;
+		if (root_cost + tree.cost(tree.slotOf(spur_id)) >= limit) {
+			return;
+		}
+		// root nodes are removed, and the next relationship of routes with the same root
+		final LongHashSet removed_nodes = new LongHashSet();
+		for (int j = 0; j < i; j++) {
+			removed_nodes.add(route.node_ids[j]);
+		}
+		final LongHashSet removed_rels = new LongHashSet();
+		for (final Route r : accepted) {
+			if (r.rel_ids.length > i && samePrefix(r, route, i)) {
+				removed_rels.add(r.rel_ids[i]);
+			}
+		}
+		final long[] root_nodes = Arrays.copyOf(route.node_ids, i + 1);
+		final long[] root_rels = Arrays.copyOf(route.rel_ids, i);
+		final double[] root_costs = Arrays.copyOf(route.costs, i + 1);
+		// tree path of the spur node, if it avoids removed nodes and relationships
+		Route candidate = treeRouteAvoiding(root_nodes, root_rels, root_costs, removed_nodes, removed_rels);
+		if (candidate == null) {
+			candidate = search(root_nodes, root_rels, root_costs, removed_nodes, removed_rels, limit);
+		}
+		if (candidate != null && seen.add(key(candidate.rel_ids))) {
+			candidates.add(candidate);
+			// keep only as many candidates as routes still to find
+			while (candidates.size() > k - accepted.size()) {
+				candidates.pollLast();
+			}
+		}
+	}
+
+	// root followed by the tree path from its last node to target
+	private Route treeRoute(final long[] root_nodes, final long[] root_rels, final double[] root_costs) {
+		return treeRouteAvoiding(root_nodes, root_rels, root_costs, null, null);
+	}
+
+	// as treeRoute, null if the tree path uses a removed node or relationship
+	private Route treeRouteAvoiding(final long[] root_nodes, final long[] root_rels, final double[] root_costs, final LongHashSet removed_nodes,
+			final LongHashSet removed_rels) {
+		final int slot = tree.slotOf(root_nodes[root_nodes.length - 1]);
+		// tree paths run from target, so they are read backwards
+		final long[] t_nodes = tree.nodePath(slot);
+		final long[] t_rels = tree.path(slot);
+		final double base = root_costs[root_costs.length - 1] + tree.cost(slot);
+		final int n = root_nodes.length;
+		final long[] node_ids = Arrays.copyOf(root_nodes, n + t_nodes.length - 1);
+		final long[] rel_ids = Arrays.copyOf(root_rels, root_rels.length + t_rels.length);
+		final double[] costs = Arrays.copyOf(root_costs, n + t_nodes.length - 1);
+		for (int j = 1; j < t_nodes.length; j++) {
+			final long id = t_nodes[t_nodes.length - 1 - j];
+			final long rel_id = t_rels[t_rels.length - j];
+			if (removed_nodes != null && (removed_nodes.contains(id) || removed_rels.contains(rel_id))) {
+				return null;
+			}
+			node_ids[n - 1 + j] = id;
+			rel_ids[root_rels.length + j - 1] = rel_id;
+			costs[n - 1 + j] = base - tree.cost(tree.slotOf(id));
+		}
+		return new Route(node_ids, rel_ids, costs, seq++);
+	}
+
+	// A* from the last root node to target avoiding removed nodes and relationships,
+	// null if there is no route cheaper than limit
+	private Route search(final long[] root_nodes, final long[] root_rels, final double[] root_costs, final LongHashSet removed_nodes,
+			final LongHashSet removed_rels, final double limit) {
+		final double root_cost = root_costs[root_costs.length - 1];
+		// nodes out of the tree can't reach target
+		final Adjacency restricted = (node_id, visitor) -> adjacency.expand(node_id, (rel_id, n_id, cost) -> {
+			if (!removed_rels.contains(rel_id) && !removed_nodes.contains(n_id) && tree.slotOf(n_id) >= 0) {
+				visitor.visit(rel_id, n_id, cost);
+			}
+		});
+		final Dijkstra sp = new Dijkstra(restricted, root_nodes[root_nodes.length - 1], id -> tree.cost(tree.slotOf(id)), counters);
+		while (!sp.isEmpty()) {
+			// cost + potential is a lower bound of the spur route
+			if (root_cost + sp.peekCost() >= limit) {
+				return null;
+			}
+			check(root_cost + sp.peekCost());
+			final int slot = sp.poll();
+			if (sp.nodeId(slot) == to_id) {
+				final long[] s_nodes = sp.nodePath(slot);
+				final long[] s_rels = sp.path(slot);
+				final int n = root_nodes.length;
+				final long[] node_ids = Arrays.copyOf(root_nodes, n + s_nodes.length - 1);
+				System.arraycopy(s_nodes, 1, node_ids, n, s_nodes.length - 1);
+				final long[] rel_ids = Arrays.copyOf(root_rels, root_rels.length + s_rels.length);
+				System.arraycopy(s_rels, 0, rel_ids, root_rels.length, s_rels.length);
+				final double[] costs = Arrays.copyOf(root_costs, node_ids.length);
+				for (int j = 1; j < s_nodes.length; j++) {
+					costs[n - 1 + j] = root_cost + sp.cost(sp.slotOf(s_nodes[j]));
+				}
+				return new Route(node_ids, rel_ids, costs, seq++);
+			}
+			sp.expand(slot);
+		}
+		return null;
+	}
+
+	private void check(final double cost) {
+		final String over = budget.check(counters.nodes_settled, cost);
+		if (over != null) {
+			throw new BudgetException(over);
+		}
+	}
+
+	// true if the first i relationships of a and b are the same
+	private static boolean samePrefix(final Route a, final Route b, final int i) {
+		for (int j = 0; j < i; j++) {
+			if (a.rel_ids[j] != b.rel_ids[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Long> key(final long[] rel_ids) {
+		final List<Long> key = new ArrayList<>(rel_ids.length);
+		for (final long rel_id : rel_ids) {
+			key.add(rel_id);
+		}
+		return key;
+	}
+}
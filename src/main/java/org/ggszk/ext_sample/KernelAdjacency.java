@@ -0,0 +1,287 @@
+package org.ggszk.ext_sample;
+
+import java.util.Collections;
+
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.neo4j.graphdb.DependencyResolver;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.internal.kernel.api.CursorFactory;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipGroupCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+/**
+ * Adjacency read from the store through the Kernel cursor API
+ *
+ * One node, relationship and property cursor is allocated per instance and
+ * reused for every expansion, and the cost property token is resolved once,
+ * so expanding a node allocates no proxies (only the cost Value itself).
+ * Relationship types and directions of the TraversalSpec are resolved to
+ * tokens once too. On dense nodes only the relationship chains of matching
+ * groups are read, on sparse nodes the others are skipped by type.
+ * Costs are looked up in the CostCache of the database first, unless the
+ * transaction has changes of its own that the cache wouldn't see.
+ * Must be used in the transaction (and thread) it was created in.
+ */
+public class KernelAdjacency implements Adjacency, AutoCloseable {
+	// direction flags
+	private static final int OUT = 1;
+	private static final int IN = 2;
+
+	private final Read read;
+	private final TokenRead token_read;
+	private final NodeCursor node_cursor;
+	private final RelationshipTraversalCursor rel_cursor;
+	private final RelationshipGroupCursor group_cursor;
+	private final PropertyCursor property_cursor;
+	// every relationship in both directions
+	private final boolean all_relationships;
+	// direction flags of any type, and of each relationship type token
+	private final int any_flags;
+	private final IntIntHashMap type_flags = new IntIntHashMap();
+	// Property for cost: type must be double (null if unweighted)
+	private final String cost_property;
+	// property key token of cost, NO_TOKEN if unweighted or the key doesn't exist
+	private final int cost_key;
+	// cost of relationships without cost_property, NaN if it is an error
+	private final double default_cost;
+	// cache of committed costs, null if not used
+	private final CostCache cost_cache;
+
+	public KernelAdjacency(final KernelTransaction ktx, final String cost_property) {
+		this(ktx, cost_property, null);
+	}
+
+	public KernelAdjacency(final KernelTransaction ktx, final String cost_property, final CostCache cost_cache) {
+		this(ktx, cost_property == null ? TraversalSpec.DEFAULT : new TraversalSpec(Collections.emptyList(), cost_property, Double.NaN),
+				cost_property != null, cost_cache);
+	}
+
+	public KernelAdjacency(final KernelTransaction ktx, final TraversalSpec spec, final boolean weighted, final CostCache cost_cache) {
+		this.read = ktx.dataRead();
+		this.token_read = ktx.tokenRead();
+		final CursorFactory cursors = ktx.cursors();
+		this.node_cursor = cursors.allocateNodeCursor();
+		this.rel_cursor = cursors.allocateRelationshipTraversalCursor();
+		this.group_cursor = cursors.allocateRelationshipGroupCursor();
+		this.property_cursor = cursors.allocatePropertyCursor();
+		this.all_relationships = spec.allRelationships();
+		int any = 0;
+		for (final TraversalSpec.Entry entry : spec.relationships) {
+			final int flags = flags(entry.direction);
+			if (entry.type == null) {
+				any |= flags;
+			} else {
+				// types that don't exist have no relationships
+				final int type = token_read.relationshipType(entry.type);
+				if (type != TokenRead.NO_TOKEN) {
+					type_flags.put(type, type_flags.get(type) | flags);
+				}
+			}
+		}
+		this.any_flags = any;
+		this.cost_property = weighted ? spec.weight_property : null;
+		this.cost_key = cost_property == null ? TokenRead.NO_TOKEN : token_read.propertyKey(cost_property);
+		this.default_cost = spec.default_weight;
+		this.cost_cache = cost_cache;
+	}
+
+	// adjacency of spec on the transaction bound to current thread, weighted by
+	// the weight property of spec if weighted
+	public static KernelAdjacency of(final GraphDatabaseService db, final TraversalSpec spec, final boolean weighted) {
+		final SampleExtension extension = weighted && CostCache.PROPERTY.equals(spec.weight_property) ? SampleExtension.ofCommitted(db) : null;
+		return new KernelAdjacency(kernelTransaction(db), spec, weighted, extension == null ? null : extension.costCache());
+	}
+
+	// kernel transaction bound to current thread
+	public static KernelTransaction kernelTransaction(final GraphDatabaseService db) {
+		return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class, DependencyResolver.SelectionStrategy.ONLY)
+				.getKernelTransactionBoundToThisThread(true);
+	}
+
+	private static int flags(final Direction direction) {
+		switch (direction) {
+		case OUTGOING:
+			return OUT;
+		case INCOMING:
+			return IN;
+		default:
+			return OUT | IN;
+		}
+	}
+
+	// direction flags followed for relationship type token
+	private int flags(final int type) {
+		return any_flags | type_flags.get(type);
+	}
+
+	@Override
+	public void expand(final long node_id, final Visitor visitor) {
+		read.singleNode(node_id, node_cursor);
+		if (!node_cursor.next()) {
+			throw new NotFoundException("Node " + node_id + " not found");
+		}
+		if (all_relationships) {
+			node_cursor.allRelationships(rel_cursor);
+			visitAll(visitor);
+		} else if (node_cursor.isDense()) {
+			// relationships are grouped by type and direction
+			node_cursor.relationships(group_cursor);
+			while (group_cursor.next()) {
+				final int flags = flags(group_cursor.type());
+				if ((flags & OUT) != 0) {
+					group_cursor.outgoing(rel_cursor);
+					visitAll(visitor);
+				}
+				if ((flags & IN) != 0) {
+					group_cursor.incoming(rel_cursor);
+					visitAll(visitor);
+				}
+				// loops are both outgoing and incoming
+				if (flags != 0) {
+					group_cursor.loops(rel_cursor);
+					visitAll(visitor);
+				}
+			}
+		} else {
+			node_cursor.allRelationships(rel_cursor);
+			while (rel_cursor.next()) {
+				final int flags = flags(rel_cursor.type());
+				if (((flags & OUT) != 0 && rel_cursor.sourceNodeReference() == node_id)
+						|| ((flags & IN) != 0 && rel_cursor.targetNodeReference() == node_id)) {
+					visit(visitor);
+				}
+			}
+		}
+	}
+
+	// number of relationships expand visits, from the group counts on dense nodes
+	// (not from a visitor: the cursors are shared with expand)
+	@Override
+	public long degree(final long node_id) {
+		read.singleNode(node_id, node_cursor);
+		if (!node_cursor.next()) {
+			throw new NotFoundException("Node " + node_id + " not found");
+		}
+		long degree = 0;
+		if (node_cursor.isDense()) {
+			node_cursor.relationships(group_cursor);
+			while (group_cursor.next()) {
+				final int flags = all_relationships ? OUT | IN : flags(group_cursor.type());
+				if ((flags & OUT) != 0) {
+					degree += group_cursor.outgoingCount();
+				}
+				if ((flags & IN) != 0) {
+					degree += group_cursor.incomingCount();
+				}
+				if (flags != 0) {
+					degree += group_cursor.loopCount();
+				}
+			}
+			return degree;
+		}
+		node_cursor.allRelationships(rel_cursor);
+		while (rel_cursor.next()) {
+			final int flags = all_relationships ? OUT | IN : flags(rel_cursor.type());
+			if (((flags & OUT) != 0 && rel_cursor.sourceNodeReference() == node_id)
+					|| ((flags & IN) != 0 && rel_cursor.targetNodeReference() == node_id)) {
+				degree++;
+			}
+		}
+		return degree;
+	}
+
+	// visit every relationship of rel_cursor
+	private void visitAll(final Visitor visitor) {
+		while (rel_cursor.next()) {
+			visit(visitor);
+		}
+	}
+
+	// get adjacent node of current relationship and its cost
+	private void visit(final Visitor visitor) {
+		final double cost = cost_property == null ? 0.0 : cost();
+		visitor.visit(rel_cursor.relationshipReference(), rel_cursor.neighbourNodeReference(), cost);
+	}
+
+	// cost of current relationship
+	private double cost() {
+		double cost;
+		if (cost_cache == null) {
+			cost = readCost();
+		} else {
+			final long rel_id = rel_cursor.relationshipReference();
+			cost = cost_cache.get(rel_id);
+			if (Double.isNaN(cost)) {
+				final long version = cost_cache.version();
+				cost = readCost();
+				// only actual values are cached, the default depends on the call
+				if (!Double.isNaN(cost)) {
+					cost_cache.put(rel_id, cost, version);
+				}
+			}
+		}
+		if (Double.isNaN(cost)) {
+			if (Double.isNaN(default_cost)) {
+				throw new NotFoundException("Relationship " + rel_cursor.relationshipReference() + " has no property " + cost_property);
+			}
+			return default_cost;
+		}
+		return cost;
+	}
+
+	// cost of current relationship read from the store, NaN if it has no cost property
+	private double readCost() {
+		if (cost_key != TokenRead.NO_TOKEN) {
+			rel_cursor.properties(property_cursor);
+			while (property_cursor.next()) {
+				if (property_cursor.propertyKey() == cost_key) {
+					return ((NumberValue) property_cursor.propertyValue()).doubleValue();
+				}
+			}
+		}
+		return Double.NaN;
+	}
+
+	// property key token, NO_TOKEN if the key doesn't exist
+	public int propertyKey(final String name) {
+		return token_read.propertyKey(name);
+	}
+
+	// property of a node, NO_VALUE if the node or the property doesn't exist
+	public Value nodeProperty(final long node_id, final int key) {
+		if (key == TokenRead.NO_TOKEN) {
+			return Values.NO_VALUE;
+		}
+		read.singleNode(node_id, node_cursor);
+		if (!node_cursor.next()) {
+			return Values.NO_VALUE;
+		}
+		node_cursor.properties(property_cursor);
+		while (property_cursor.next()) {
+			if (property_cursor.propertyKey() == key) {
+				return property_cursor.propertyValue();
+			}
+		}
+		return Values.NO_VALUE;
+	}
+
+	@Override
+	public void close() {
+		node_cursor.close();
+		rel_cursor.close();
+		group_cursor.close();
+		property_cursor.close();
+	}
+}
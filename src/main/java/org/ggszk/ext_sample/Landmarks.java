@@ -0,0 +1,109 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+
+/**
+ * Landmark distance tables for A* with landmarks (ALT)
+ *
+ * For every landmark L the exact cost d(L, v) to every node of a projection is
+ * stored in one double[] (landmark-major). By the triangle inequality,
+ * |d(L, v) - d(L, w)| is a lower bound of d(v, w) for every L.
+ */
+public class Landmarks {
+	// node indexes of landmarks
+	private final int[] landmarks;
+	// number of nodes
+	private final int n;
+	// d(landmarks[l], v) is dists[l * n + v], infinity if unreachable
+	private final double[] dists;
+
+	public Landmarks(final int[] landmarks, final int n, final double[] dists) {
+		this.landmarks = landmarks;
+		this.n = n;
+		this.dists = dists;
+	}
+
+	// pick k landmarks by farthest selection and compute their distance tables
+	public static Landmarks build(final Projection projection, final int k) {
+		final int n = projection.nodeCount();
+		final int count = Math.min(k, n);
+		final int[] landmarks = new int[count];
+		final double[] dists = new double[count * n];
+		if (count == 0) {
+			return new Landmarks(landmarks, n, dists);
+		}
+		// minimum distance to chosen landmarks, for farthest selection
+		final double[] min_dist = new double[n];
+		// the first landmark is the farthest node from node 0
+		singleSource(projection, 0, min_dist, 0);
+		int next = farthest(min_dist);
+		Arrays.fill(min_dist, Double.POSITIVE_INFINITY);
+		for (int l = 0; l < count; l++) {
+			landmarks[l] = next;
+			singleSource(projection, next, dists, l * n);
+			for (int v = 0; v < n; v++) {
+				min_dist[v] = Math.min(min_dist[v], dists[l * n + v]);
+			}
+			// next landmark is the node farthest from all chosen ones
+			// (nodes not reachable from any landmark come first)
+			next = farthest(min_dist);
+		}
+		return new Landmarks(landmarks, n, dists);
+	}
+
+	// full djkstra from node index, costs are written to out[offset + v]
+	private static void singleSource(final Projection projection, final int from, final double[] out, final int offset) {
+		Arrays.fill(out, offset, offset + projection.nodeCount(), Double.POSITIVE_INFINITY);
+		final Dijkstra sp = new Dijkstra(projection, from);
+		while (!sp.isEmpty()) {
+			final int slot = sp.poll();
+			out[offset + (int) sp.nodeId(slot)] = sp.cost(slot);
+			sp.expand(slot);
+		}
+	}
+
+	private static int farthest(final double[] dist) {
+		int max = 0;
+		for (int v = 1; v < dist.length; v++) {
+			if (dist[v] > dist[max]) {
+				max = v;
+			}
+		}
+		return max;
+	}
+
+	// lower bound of cost between node indexes v and w
+	public double lowerBound(final int v, final int w) {
+		double bound = 0.0;
+		for (int l = 0; l < landmarks.length; l++) {
+			final double d_v = dists[l * n + v];
+			final double d_w = dists[l * n + w];
+			if (d_v == Double.POSITIVE_INFINITY || d_w == Double.POSITIVE_INFINITY) {
+				// one of them is reachable from the landmark and the other is not
+				if (d_v != d_w) {
+					return Double.POSITIVE_INFINITY;
+				}
+				continue;
+			}
+			bound = Math.max(bound, Math.abs(d_v - d_w));
+		}
+		return bound;
+	}
+
+	// average potential of bidirectional A* from node index from to node index to:
+	// forward uses it as is and backward uses it negated, so both are consistent
+	// and a path has the same length in both searches
+	public Dijkstra.Potential potential(final int from, final int to, final boolean forward) {
+		final double sign = forward ? 0.5 : -0.5;
+		return v -> sign * (lowerBound((int) v, to) - lowerBound((int) v, from));
+	}
+
+	public int count() {
+		return landmarks.length;
+	}
+
+	// node index of l-th landmark
+	public int landmark(final int l) {
+		return landmarks[l];
+	}
+}
@@ -0,0 +1,183 @@
+package org.ggszk.ext_sample;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Traversal metrics of one procedure, summed over calls
+ *
+ * Counters are striped LongAdders, so concurrent calls don't contend. Wall
+ * time goes to a log-linear histogram (4 buckets per power of two of micro
+ * seconds, so percentiles are within 25%). Each procedure's metrics are also
+ * registered as an MBean "org.ggszk.ext_sample:type=Metrics,name=<procedure>".
+ */
+public class Metrics implements MetricsMBean {
+	private static final String DOMAIN = "org.ggszk.ext_sample";
+	// linear sub-buckets per power of two
+	private static final int SUB_BITS = 2;
+	private static final int SUBS = 1 << SUB_BITS;
+
+	// metrics by procedure name
+	private static final ConcurrentMap<String, Metrics> procedures = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder nodes_settled = new LongAdder();
+	private final LongAdder relationships_expanded = new LongAdder();
+	private final LongAdder heap_pushes = new LongAdder();
+	private final LongAdder decrease_keys = new LongAdder();
+	private final LongAccumulator peak_frontier = new LongAccumulator(Math::max, 0);
+	private final LongAdder total_micros = new LongAdder();
+	private final LongAccumulator max_micros = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] buckets = new LongAdder[SUBS * 64];
+
+	private Metrics(final String name) {
+		this.name = name;
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	// metrics of procedure, created and registered to JMX on first use
+	public static Metrics of(final String name) {
+		return procedures.computeIfAbsent(name, k -> {
+			final Metrics metrics = new Metrics(k);
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(DOMAIN + ":type=Metrics,name=" + k));
+			} catch (final JMException e) {
+				// metrics are still returned by example.stats
+			}
+			return metrics;
+		});
+	}
+
+	// metrics of all procedures called so far
+	public static List<Metrics> all() {
+		final List<Metrics> all = new ArrayList<>(procedures.values());
+		all.sort((a, b) -> a.name.compareTo(b.name));
+		return all;
+	}
+
+	// add counters of a finished call
+	public void record(final Counters counters) {
+		final long micros = (System.nanoTime() - counters.start) / 1000;
+		calls.increment();
+		nodes_settled.add(counters.nodes_settled);
+		relationships_expanded.add(counters.relationships_expanded);
+		heap_pushes.add(counters.heap_pushes);
+		decrease_keys.add(counters.decrease_keys);
+		peak_frontier.accumulate(counters.peak_frontier);
+		total_micros.add(micros);
+		max_micros.accumulate(micros);
+		buckets[bucket(micros)].increment();
+	}
+
+	private static int bucket(final long micros) {
+		if (micros < SUBS) {
+			return (int) micros;
+		}
+		final int exp = 63 - Long.numberOfLeadingZeros(micros);
+		final int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUBS - 1);
+		return (exp - SUB_BITS + 1) * SUBS + sub;
+	}
+
+	// upper bound of bucket in micro seconds
+	private static long upperBound(final int bucket) {
+		if (bucket < SUBS) {
+			return bucket;
+		}
+		final int exp = bucket / SUBS + SUB_BITS - 1;
+		final long sub = bucket % SUBS;
+		return ((SUBS + sub + 1) << (exp - SUB_BITS)) - 1;
+	}
+
+	// wall time of quantile q (0 < q <= 1) in milli seconds
+	public double percentileMs(final double q) {
+		final long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0.0;
+		}
+		final long rank = (long) Math.ceil(q * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max_micros.get()) / 1000.0;
+			}
+		}
+		return max_micros.get() / 1000.0;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	@Override
+	public long getNodesSettled() {
+		return nodes_settled.sum();
+	}
+
+	@Override
+	public long getRelationshipsExpanded() {
+		return relationships_expanded.sum();
+	}
+
+	@Override
+	public long getHeapPushes() {
+		return heap_pushes.sum();
+	}
+
+	@Override
+	public long getDecreaseKeys() {
+		return decrease_keys.sum();
+	}
+
+	@Override
+	public long getPeakFrontier() {
+		return peak_frontier.get();
+	}
+
+	@Override
+	public double getMeanMs() {
+		final long n = calls.sum();
+		return n == 0 ? 0.0 : total_micros.sum() / 1000.0 / n;
+	}
+
+	@Override
+	public double getP50Ms() {
+		return percentileMs(0.5);
+	}
+
+	@Override
+	public double getP90Ms() {
+		return percentileMs(0.9);
+	}
+
+	@Override
+	public double getP99Ms() {
+		return percentileMs(0.99);
+	}
+
+	@Override
+	public double getMaxMs() {
+		return max_micros.get() / 1000.0;
+	}
+}
@@ -0,0 +1,28 @@
+package org.ggszk.ext_sample;
+
+/**
+ * JMX view of Metrics
+ */
+public interface MetricsMBean {
+	long getCalls();
+
+	long getNodesSettled();
+
+	long getRelationshipsExpanded();
+
+	long getHeapPushes();
+
+	long getDecreaseKeys();
+
+	long getPeakFrontier();
+
+	double getMeanMs();
+
+	double getP50Ms();
+
+	double getP90Ms();
+
+	double getP99Ms();
+
+	double getMaxMs();
+}
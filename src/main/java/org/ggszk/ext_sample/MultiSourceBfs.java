@@ -0,0 +1,174 @@
+package org.ggszk.ext_sample;
+
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+/**
+ * BFS from many start nodes at once (MS-BFS), as a stream of node ids
+ *
+ * Up to 64 start nodes form a batch, and each node keeps one 64 bit word per
+ * state: seen (bit i: found from start node i) and visit (found at the current
+ * depth). A level expands every node of the frontier once for all start nodes
+ * that reached it, so searches sharing nodes share adjacency scans. Batches
+ * run one after another. Each node is given once per start node, level by
+ * level, with its start node and depth (see source() and depth()). When the
+ * budget runs out, the node returned last gets the budget status.
+ */
+public class MultiSourceBfs extends Spliterators.AbstractLongSpliterator implements Adjacency.Visitor {
+	// start nodes in one batch (bits of a word)
+	public static final int BATCH = Long.SIZE;
+
+	private final Adjacency adjacency;
+	// distinct start node ids
+	private final long[] start_ids;
+	private final Counters counters;
+	private final Budget budget;
+	// first start node of the batch
+	private int batch = 0;
+	// node id -> start nodes of the batch that found it
+	private LongLongHashMap seen;
+	// current level: node ids and start nodes that found them at this depth
+	private long[] level_ids = new long[0];
+	private long[] level_bits = new long[0];
+	private int depth = 0;
+	// next level while expanding, and start nodes of the node being expanded
+	private LongLongHashMap next;
+	private long cur_bits;
+	// row position: index in level and start nodes of the node not given yet
+	private int pos = 0;
+	private long rest = 0;
+	private long node_id;
+	// the row given to the last action
+	private long row_source;
+	private int row_depth;
+	private String row_status;
+
+	public MultiSourceBfs(final Adjacency adjacency, final long[] start_ids, final Counters counters, final Budget budget) {
+		super(Long.MAX_VALUE, ORDERED | NONNULL | IMMUTABLE);
+		this.adjacency = adjacency;
+		// a start node given twice is searched once
+		this.start_ids = LongArrayList.newListWith(start_ids).distinct().toArray();
+		this.counters = counters;
+		this.budget = budget;
+		startBatch();
+	}
+
+	@Override
+	public boolean tryAdvance(final LongConsumer action) {
+		if (rest == 0) {
+			// end
+			if (pos == level_ids.length) {
+				return false;
+			}
+			node_id = level_ids[pos];
+			rest = level_bits[pos];
+			pos++;
+		}
+		final int bit = Long.numberOfTrailingZeros(rest);
+		rest &= rest - 1;
+		row_source = start_ids[batch + bit];
+		row_depth = depth;
+		row_status = budget.canExpand(depth) ? Budget.OK : Budget.MAX_DEPTH;
+		// last row of the level: next level, or next batch
+		if (rest == 0 && pos == level_ids.length) {
+			advance();
+		}
+		action.accept(node_id);
+		return true;
+	}
+
+	// start node id of the node given to the last action
+	public long source() {
+		return row_source;
+	}
+
+	// depth of the node given to the last action
+	public int depth() {
+		return row_depth;
+	}
+
+	// status of the node given to the last action
+	public String status() {
+		return row_status;
+	}
+
+	// start nodes of the batch are the first level
+	private void startBatch() {
+		final int n = Math.min(BATCH, start_ids.length - batch);
+		seen = new LongLongHashMap();
+		level_ids = new long[n];
+		level_bits = new long[n];
+		for (int i = 0; i < n; i++) {
+			seen.put(start_ids[batch + i], 1L << i);
+			level_ids[i] = start_ids[batch + i];
+			level_bits[i] = 1L << i;
+		}
+		depth = 0;
+		pos = 0;
+		counters.heap_pushes += n;
+		counters.frontier(n);
+	}
+
+	private void advance() {
+		if (budget.canExpand(depth)) {
+			final String over = expandLevel();
+			if (over != null) {
+				// stop all batches
+				row_status = over;
+				level_ids = new long[0];
+				pos = 0;
+				return;
+			}
+			if (level_ids.length > 0) {
+				return;
+			}
+		}
+		batch += BATCH;
+		if (batch < start_ids.length) {
+			startBatch();
+		}
+	}
+
+	// next level from the current one, budget status if it ran out
+	private String expandLevel() {
+		next = new LongLongHashMap();
+		for (int i = 0; i < level_ids.length; i++) {
+			cur_bits = level_bits[i];
+			adjacency.expand(level_ids[i], this);
+			counters.nodes_settled++;
+			// nodes are left
+			if (i < level_ids.length - 1 || !next.isEmpty()) {
+				final String over = budget.check(counters.nodes_settled, 0.0);
+				if (over != null) {
+					return over;
+				}
+			}
+		}
+		// seen is not changed while expanding, so next has only new bits
+		level_ids = next.keysView().toArray();
+		level_bits = new long[level_ids.length];
+		for (int i = 0; i < level_ids.length; i++) {
+			level_bits[i] = next.get(level_ids[i]);
+			seen.put(level_ids[i], seen.get(level_ids[i]) | level_bits[i]);
+		}
+		next = null;
+		depth++;
+		pos = 0;
+		counters.heap_pushes += level_ids.length;
+		counters.frontier(level_ids.length);
+		return null;
+	}
+
+	// start nodes of the expanded node that have not found the other node yet
+	@Override
+	public void visit(final long rel_id, final long n_id, final double cost) {
+		counters.relationships_expanded++;
+		final long d = cur_bits & ~seen.get(n_id);
+		if (d != 0) {
+			next.put(n_id, next.get(n_id) | d);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.ggszk.ext_sample;
+
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+
+import org.eclipse.collections.api.map.primitive.LongLongMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+/**
+ * Lazy BFS / DFS over node ids
+ *
+ * Nodes are visited one at a time when the stream asks for the next one,
+ * so a consumer that stops early (e.g. Cypher LIMIT) also stops the traversal.
+ * When the budget runs out, the node returned last gets the budget status.
+ */
+public class NodeTraversal extends Spliterators.AbstractLongSpliterator implements Adjacency.Visitor {
+	// parent relationship id of the start node
+	public static final long NO_PARENT = -1;
+
+	private final Adjacency adjacency;
+	// true: DFS (stack), false: BFS (queue)
+	private final boolean depth_first;
+	// map for keeping node id and parent relationship id
+	// (a node is in this map iff it was already found)
+	private final LongLongHashMap parent = new LongLongHashMap();
+	// ring buffer of node ids used as queue (BFS) or stack (DFS), their depths
+	// and parent node ids
+	private long[] queue = new long[64];
+	private int[] depths = new int[64];
+	private long[] froms = new long[64];
+	private int head = 0;
+	private int size = 0;
+	// work counters of the procedure call
+	private final Counters counters;
+	private final Budget budget;
+	// depth and parent node id of the current node
+	private int depth = 0;
+	private long parent_id = NO_PARENT;
+	// node being expanded
+	private long cur_id;
+	// status of the current node: OK, MAX_DEPTH if it was not expanded
+	// or the budget status if it is the last one
+	private String status = Budget.OK;
+	private boolean stopped = false;
+
+	public NodeTraversal(final Adjacency adjacency, final long start_id, final boolean depth_first) {
+		this(adjacency, start_id, depth_first, new Counters(), Budget.unlimited());
+	}
+
+	public NodeTraversal(final Adjacency adjacency, final long start_id, final boolean depth_first, final Counters counters, final Budget budget) {
+		super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL | IMMUTABLE);
+		this.adjacency = adjacency;
+		this.depth_first = depth_first;
+		this.counters = counters;
+		this.budget = budget;
+		// to avoid coming back to start node
+		parent.put(start_id, NO_PARENT);
+		add(start_id, 0, NO_PARENT);
+	}
+
+	@Override
+	public boolean tryAdvance(final LongConsumer action) {
+		// end if queue is empty or budget ran out
+		if (size == 0 || stopped) {
+			return false;
+		}
+		final long c_id;
+		if (depth_first) {
+			size--;
+			c_id = queue[(head + size) % queue.length];
+			depth = depths[(head + size) % queue.length];
+			parent_id = froms[(head + size) % queue.length];
+		} else {
+			c_id = queue[head];
+			depth = depths[head];
+			parent_id = froms[head];
+			head = (head + 1) % queue.length;
+			size--;
+		}
+		counters.nodes_settled++;
+		status = Budget.OK;
+		if (budget.canExpand(depth)) {
+			cur_id = c_id;
+			adjacency.expand(c_id, this);
+		} else {
+			status = Budget.MAX_DEPTH;
+		}
+		// this is the last node if budget ran out and nodes are left
+		if (size > 0) {
+			final String over = budget.check(counters.nodes_settled, 0.0);
+			if (over != null) {
+				status = over;
+				stopped = true;
+			}
+		}
+		action.accept(c_id);
+		return true;
+	}
+
+	// if not found add next node
+	@Override
+	public void visit(final long rel_id, final long n_id, final double cost) {
+		counters.relationships_expanded++;
+		if (!parent.containsKey(n_id)) {
+			add(n_id, depth + 1, cur_id);
+			parent.put(n_id, rel_id);
+		}
+	}
+
+	// depth of the node given to the last action
+	public int depth() {
+		return depth;
+	}
+
+	// status of the node given to the last action
+	public String status() {
+		return status;
+	}
+
+	// parent node id of the node given to the last action, NO_PARENT for the start node
+	public long parentId() {
+		return parent_id;
+	}
+
+	// parent relationship ids of the nodes found so far
+	public LongLongMap parents() {
+		return parent;
+	}
+
+	private void add(final long id, final int d, final long from) {
+		if (size == queue.length) {
+			final long[] q = new long[queue.length * 2];
+			final int[] ds = new int[queue.length * 2];
+			final long[] fs = new long[queue.length * 2];
+			for (int i = 0; i < size; i++) {
+				q[i] = queue[(head + i) % queue.length];
+				ds[i] = depths[(head + i) % queue.length];
+				fs[i] = froms[(head + i) % queue.length];
+			}
+			queue = q;
+			depths = ds;
+			froms = fs;
+			head = 0;
+		}
+		queue[(head + size) % queue.length] = id;
+		depths[(head + size) % queue.length] = d;
+		froms[(head + size) % queue.length] = from;
+		size++;
+		counters.heap_pushes++;
+		counters.frontier(size);
+	}
+}
@@ -0,0 +1,190 @@
+package org.ggszk.ext_sample;
+
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+import org.eclipse.collections.api.map.primitive.LongLongMap;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Level-synchronous parallel BFS
+ *
+ * Each level of the frontier is split into chunks that are expanded on at most
+ * concurrency threads of the Workers pool, each chunk into its own buffer of (node, relationship, parent)
+ * triples.
+ * The buffers are merged in chunk order between levels, so nodes, depths and
+ * parents are exactly those of the sequential BFS (sample6_1).
+ * Levels are computed lazily when the stream reaches them.
+ * When the budget runs out, the node returned last gets the budget status.
+ */
+public class ParallelBfs extends Spliterators.AbstractLongSpliterator {
+	// minimum number of frontier nodes in one chunk
+	private static final int MIN_CHUNK = 256;
+
+	private final GraphDatabaseService db;
+	// relationships followed
+	private final TraversalSpec spec;
+	private final int concurrency;
+	// visited bitset by node id, ids beyond it (created after start) go to overflow
+	// (read by workers while a level is expanded, written only by the merge)
+	private final long[] visited;
+	private final LongHashSet overflow = new LongHashSet();
+	// map for keeping node id and parent relationship id
+	private final LongLongHashMap parent = new LongLongHashMap();
+	// current level, and parent node ids of its nodes
+	private long[] level;
+	private long[] level_parents;
+	private int pos = 0;
+	private int depth = 0;
+	// work counters of the procedure call (relationships are counted by workers)
+	private final Counters counters;
+	private final LongAdder expanded = new LongAdder();
+	private final Budget budget;
+	// status of the current node (see NodeTraversal)
+	private String status = Budget.OK;
+	private boolean stopped = false;
+	// parent node id of the current node
+	private long parent_id = NodeTraversal.NO_PARENT;
+
+	public ParallelBfs(final GraphDatabaseService db, final TraversalSpec spec, final long start_id, final int concurrency, final Counters counters,
+			final Budget budget) {
+		super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL | IMMUTABLE);
+		this.db = db;
+		this.spec = spec;
+		this.concurrency = Math.max(1, concurrency);
+		this.counters = counters;
+		this.budget = budget;
+		this.visited = new long[(int) ((Workers.nodeHighId(db) + 63) >>> 6)];
+		setVisited(start_id);
+		parent.put(start_id, NodeTraversal.NO_PARENT);
+		level = new long[] { start_id };
+		level_parents = new long[] { NodeTraversal.NO_PARENT };
+	}
+
+	@Override
+	public boolean tryAdvance(final LongConsumer action) {
+		if (stopped) {
+			return false;
+		}
+		if (pos == level.length) {
+			if (level.length == 0 || !budget.canExpand(depth)) {
+				return false;
+			}
+			nextLevel();
+			if (level.length == 0) {
+				return false;
+			}
+		}
+		counters.nodes_settled++;
+		final long id = level[pos++];
+		parent_id = level_parents[pos - 1];
+		status = budget.canExpand(depth) ? Budget.OK : Budget.MAX_DEPTH;
+		// this is the last node if budget ran out and nodes may be left
+		if (pos < level.length || budget.canExpand(depth)) {
+			final String over = budget.check(counters.nodes_settled, 0.0);
+			if (over != null) {
+				status = over;
+				stopped = true;
+			}
+		}
+		action.accept(id);
+		return true;
+	}
+
+	// depth of the node given to the last action
+	public int depth() {
+		return depth;
+	}
+
+	// status of the node given to the last action
+	public String status() {
+		return status;
+	}
+
+	// parent node id of the node given to the last action, NO_PARENT for the start node
+	public long parentId() {
+		return parent_id;
+	}
+
+	// parent relationship ids of the nodes found so far
+	public LongLongMap parents() {
+		return parent;
+	}
+
+	private void nextLevel() {
+		final long[] frontier = level;
+		// (at most concurrency threads expand chunks at a time)
+		final int chunks = Math.max(1, Math.min(concurrency * 4, frontier.length / MIN_CHUNK));
+		final List<LongArrayList> buffers = Workers.chunks(chunks, concurrency,
+				c -> expand(frontier, (int) ((long) frontier.length * c / chunks), (int) ((long) frontier.length * (c + 1) / chunks)));
+		// merge per-chunk buffers in frontier order
+		final LongArrayList next = new LongArrayList();
+		final LongArrayList next_parents = new LongArrayList();
+		for (final LongArrayList buffer : buffers) {
+			for (int i = 0; i < buffer.size(); i += 3) {
+				final long n_id = buffer.get(i);
+				if (!isVisited(n_id)) {
+					setVisited(n_id);
+					parent.put(n_id, buffer.get(i + 1));
+					next.add(n_id);
+					next_parents.add(buffer.get(i + 2));
+				}
+			}
+		}
+		level = next.toArray();
+		level_parents = next_parents.toArray();
+		pos = 0;
+		depth++;
+		counters.relationships_expanded = expanded.sum();
+		counters.heap_pushes += level.length;
+		counters.frontier(level.length);
+	}
+
+	// (node, relationship, parent node) triples of not visited neighbours of frontier[from..to)
+	private LongArrayList expand(final long[] frontier, final int from, final int to) {
+		final LongArrayList buffer = new LongArrayList();
+		try (Transaction tx = db.beginTx(); KernelAdjacency adjacency = KernelAdjacency.of(db, spec, false)) {
+			final long[] count = new long[1];
+			// node being expanded
+			final long[] current = new long[1];
+			final Adjacency.Visitor visitor = (rel_id, n_id, cost) -> {
+				count[0]++;
+				if (!isVisited(n_id)) {
+					buffer.add(n_id);
+					buffer.add(rel_id);
+					buffer.add(current[0]);
+				}
+			};
+			for (int i = from; i < to; i++) {
+				current[0] = frontier[i];
+				adjacency.expand(frontier[i], visitor);
+			}
+			expanded.add(count[0]);
+			tx.success();
+		}
+		return buffer;
+	}
+
+	private boolean isVisited(final long id) {
+		final long word = id >>> 6;
+		if (word < visited.length) {
+			return (visited[(int) word] & (1L << id)) != 0;
+		}
+		return overflow.contains(id);
+	}
+
+	private void setVisited(final long id) {
+		final long word = id >>> 6;
+		if (word < visited.length) {
+			visited[(int) word] |= 1L << id;
+		} else {
+			overflow.add(id);
+		}
+	}
+}
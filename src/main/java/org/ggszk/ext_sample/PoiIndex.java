@@ -0,0 +1,128 @@
+package org.ggszk.ext_sample;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+/**
+ * Index of POIs: category -> node ids with that category
+ *
+ * Built from the store when it is first used, then kept current on commit.
+ * The sets are copy-on-write, so a query reads a consistent snapshot without
+ * locking. Only committed state is indexed.
+ */
+public class PoiIndex {
+	// property of POI category (string)
+	public static final String PROPERTY = "category";
+
+	private final GraphDatabaseService db;
+	// guards building and updating
+	private final Object lock = new Object();
+	// category -> node ids, null until built (sets are never modified once published)
+	private volatile Map<String, LongSet> categories = null;
+
+	public PoiIndex(final GraphDatabaseService db) {
+		this.db = db;
+	}
+
+	// nodes with any of the categories
+	public LongSet nodes(final Collection<String> names) {
+		final Map<String, LongSet> current = categories();
+		if (names.size() == 1) {
+			return current.getOrDefault(names.iterator().next(), LongSets.immutable.empty());
+		}
+		final LongHashSet union = new LongHashSet();
+		for (final String name : names) {
+			final LongSet set = current.get(name);
+			if (set != null) {
+				union.addAll(set);
+			}
+		}
+		return union;
+	}
+
+	private Map<String, LongSet> categories() {
+		Map<String, LongSet> current = categories;
+		if (current == null) {
+			synchronized (lock) {
+				if (categories == null) {
+					categories = build();
+				}
+				current = categories;
+			}
+		}
+		return current;
+	}
+
+	// scan all nodes (commits wait for lock, and applying them again is harmless)
+	private Map<String, LongSet> build() {
+		final Map<String, LongHashSet> sets = new HashMap<>();
+		try (Transaction tx = db.beginTx()) {
+			for (final Node node : db.getAllNodes()) {
+				final Object category = node.getProperty(PROPERTY, null);
+				if (category instanceof String) {
+					sets.computeIfAbsent((String) category, k -> new LongHashSet()).add(node.getId());
+				}
+			}
+			tx.success();
+		}
+		return new HashMap<>(sets);
+	}
+
+	// apply category changes of a committed transaction
+	void onCommit(final TransactionData data) {
+		final Map<String, LongHashSet> changed = new HashMap<>();
+		synchronized (lock) {
+			final Map<String, LongSet> current = categories;
+			if (current == null) {
+				return;
+			}
+			// removal from previous category first, then addition to new one
+			for (final PropertyEntry<Node> entry : data.removedNodeProperties()) {
+				if (PROPERTY.equals(entry.key())) {
+					update(current, changed, entry.previouslyCommitedValue(), entry.entity().getId(), false);
+				}
+			}
+			for (final PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+				if (PROPERTY.equals(entry.key())) {
+					update(current, changed, entry.previouslyCommitedValue(), entry.entity().getId(), false);
+				}
+			}
+			for (final PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+				if (PROPERTY.equals(entry.key())) {
+					update(current, changed, entry.value(), entry.entity().getId(), true);
+				}
+			}
+			if (!changed.isEmpty()) {
+				final Map<String, LongSet> next = new HashMap<>(current);
+				next.putAll(changed);
+				categories = next;
+			}
+		}
+	}
+
+	// add or remove node in a copy of category set
+	private static void update(final Map<String, LongSet> current, final Map<String, LongHashSet> changed, final Object category, final long node_id, final boolean add) {
+		if (!(category instanceof String)) {
+			return;
+		}
+		final LongHashSet set = changed.computeIfAbsent((String) category, k -> {
+			final LongSet old = current.get(k);
+			return old == null ? new LongHashSet() : LongHashSet.newSet(old);
+		});
+		if (add) {
+			set.add(node_id);
+		} else {
+			set.remove(node_id);
+		}
+	}
+}
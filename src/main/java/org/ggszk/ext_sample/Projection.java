@@ -0,0 +1,246 @@
+package org.ggszk.ext_sample;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+/**
+ * In-memory weighted graph in compressed sparse row (CSR) format
+ *
+ * Nodes are numbered 0..n-1 in ascending Neo4j node id order. The edges of node i
+ * are offsets[i]..offsets[i + 1] - 1, and every relationship is stored in both
+ * directions. As an Adjacency, node ids are node indexes.
+ * The arrays are kept as buffers, so that a projection can be backed by heap
+ * arrays (load) or by a memory-mapped snapshot file (see ProjectionSnapshot).
+ */
+public class Projection implements Adjacency {
+	// named projections
+	private static final Map<String, Projection> projections = new ConcurrentHashMap<>();
+
+	// node index -> Neo4j node id (ascending)
+	private final LongBuffer node_ids;
+	// node index -> first edge index (length is node count + 1)
+	private final IntBuffer offsets;
+	// edge index -> target node index
+	private final IntBuffer targets;
+	// edge index -> weight
+	private final DoubleBuffer weights;
+	// edge index -> Neo4j relationship id
+	private final LongBuffer rel_ids;
+	// parameters of load (null label or type means all), to load it again
+	private final String label;
+	private final String rel_type;
+	private final String weight_property;
+	// last committed transaction id of the store before it was loaded
+	private final long last_tx_id;
+	// landmark distance tables for A*, null until built
+	private volatile Landmarks landmarks;
+	// contraction hierarchy for fast queries, null until built
+	private volatile ContractionHierarchy contraction_hierarchy;
+
+	public Projection(final LongBuffer node_ids, final IntBuffer offsets, final IntBuffer targets, final DoubleBuffer weights, final LongBuffer rel_ids,
+			final String label, final String rel_type, final String weight_property, final long last_tx_id) {
+		this.node_ids = node_ids;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.rel_ids = rel_ids;
+		this.label = label;
+		this.rel_type = rel_type;
+		this.weight_property = weight_property;
+		this.last_tx_id = last_tx_id;
+	}
+
+	// build projection from nodes with label and relationships with type between them
+	// (null label or type means all)
+	public static Projection load(final GraphDatabaseService db, final String label, final String rel_type, final String weight_property) {
+		// (commits while loading make it look stale, never current)
+		final long last_tx_id = ProjectionSnapshot.lastCommittedTxId(db);
+		// node ids
+		final LongArrayList ids = new LongArrayList();
+		try (ResourceIterator<Node> nodes = label == null ? db.getAllNodes().iterator() : db.findNodes(Label.label(label))) {
+			while (nodes.hasNext()) {
+				ids.add(nodes.next().getId());
+			}
+		}
+		final long[] node_ids = ids.toSortedArray();
+		final int n = node_ids.length;
+
+		// relationships between projected nodes, read once from their start node
+		final IntArrayList srcs = new IntArrayList();
+		final IntArrayList tgts = new IntArrayList();
+		final DoubleArrayList ws = new DoubleArrayList();
+		final LongArrayList rs = new LongArrayList();
+		final int[] degrees = new int[n];
+		for (int i = 0; i < n; i++) {
+			final Node nd = db.getNodeById(node_ids[i]);
+			final Iterable<Relationship> rels = rel_type == null ? nd.getRelationships(Direction.OUTGOING)
+					: nd.getRelationships(Direction.OUTGOING, RelationshipType.withName(rel_type));
+			for (final Relationship rel : rels) {
+				final int j = Arrays.binarySearch(node_ids, rel.getEndNodeId());
+				if (j < 0) {
+					continue;
+				}
+				srcs.add(i);
+				tgts.add(j);
+				ws.add(((Number) rel.getProperty(weight_property)).doubleValue());
+				rs.add(rel.getId());
+				degrees[i]++;
+				degrees[j]++;
+			}
+		}
+
+		// CSR arrays: every relationship in both directions
+		final int[] offsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] = offsets[i] + degrees[i];
+		}
+		final int m = offsets[n];
+		final int[] targets = new int[m];
+		final double[] weights = new double[m];
+		final long[] rel_ids = new long[m];
+		final int[] next = Arrays.copyOf(offsets, n);
+		for (int k = 0; k < srcs.size(); k++) {
+			final int i = srcs.get(k);
+			final int j = tgts.get(k);
+			int e = next[i]++;
+			targets[e] = j;
+			weights[e] = ws.get(k);
+			rel_ids[e] = rs.get(k);
+			e = next[j]++;
+			targets[e] = i;
+			weights[e] = ws.get(k);
+			rel_ids[e] = rs.get(k);
+		}
+		return new Projection(LongBuffer.wrap(node_ids), IntBuffer.wrap(offsets), IntBuffer.wrap(targets), DoubleBuffer.wrap(weights),
+				LongBuffer.wrap(rel_ids), label, rel_type, weight_property, last_tx_id);
+	}
+
+	// register projection by name (replaces existing one)
+	public static void put(final String name, final Projection projection) {
+		projections.put(name, projection);
+	}
+
+	// get projection by name
+	public static Projection get(final String name) {
+		final Projection projection = projections.get(name);
+		if (projection == null) {
+			throw new IllegalArgumentException("No projection named " + name);
+		}
+		return projection;
+	}
+
+	// remove projection by name, returns removed one or null
+	public static Projection remove(final String name) {
+		return projections.remove(name);
+	}
+
+	@Override
+	public void expand(final long node_id, final Visitor visitor) {
+		final int i = (int) node_id;
+		final int end = offsets.get(i + 1);
+		for (int e = offsets.get(i); e < end; e++) {
+			visitor.visit(rel_ids.get(e), targets.get(e), weights.get(e));
+		}
+	}
+
+	public Landmarks landmarks() {
+		return landmarks;
+	}
+
+	public void setLandmarks(final Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+
+	public ContractionHierarchy contractionHierarchy() {
+		return contraction_hierarchy;
+	}
+
+	public void setContractionHierarchy(final ContractionHierarchy contraction_hierarchy) {
+		this.contraction_hierarchy = contraction_hierarchy;
+	}
+
+	public int nodeCount() {
+		return node_ids.limit();
+	}
+
+	// number of edges (each relationship is stored as two edges)
+	public int edgeCount() {
+		return targets.limit();
+	}
+
+	// number of relationships
+	public int relationshipCount() {
+		return targets.limit() / 2;
+	}
+
+	// node index of Neo4j node id, -1 if the node is not projected
+	public int index(final long node_id) {
+		int low = 0;
+		int high = node_ids.limit() - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long id = node_ids.get(mid);
+			if (id < node_id) {
+				low = mid + 1;
+			} else if (id > node_id) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	// Neo4j node id of node index
+	public long nodeId(final int index) {
+		return node_ids.get(index);
+	}
+
+	// edges of node index are offset(index)..offset(index + 1) - 1
+	public int offset(final int index) {
+		return offsets.get(index);
+	}
+
+	public int target(final int edge) {
+		return targets.get(edge);
+	}
+
+	public double weight(final int edge) {
+		return weights.get(edge);
+	}
+
+	public long relationshipId(final int edge) {
+		return rel_ids.get(edge);
+	}
+
+	public String label() {
+		return label;
+	}
+
+	public String relationshipType() {
+		return rel_type;
+	}
+
+	public String weightProperty() {
+		return weight_property;
+	}
+
+	public long lastTxId() {
+		return last_tx_id;
+	}
+}
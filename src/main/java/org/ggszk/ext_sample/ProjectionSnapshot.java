@@ -0,0 +1,238 @@
+package org.ggszk.ext_sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.neo4j.graphdb.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Projection saved to a file in the database directory, opened by mapping it
+ *
+ * Layout (little endian): header with MAGIC, VERSION, last committed transaction
+ * id of the store when the projection was loaded, node and edge counts and the
+ * load parameters, then node ids, offsets, targets, weights and relationship ids
+ * of the CSR arrays, each section aligned to 8 bytes. Each section is mapped
+ * read-only on its own, so opening costs a few system calls and pages are read
+ * when a search touches them. A snapshot whose transaction id is not the last
+ * committed one may be stale, since any commit may have changed the graph.
+ */
+public class ProjectionSnapshot {
+	public static final int MAGIC = 0x4a505345;
+	public static final int VERSION = 1;
+	// directory of snapshots in the database directory
+	public static final String DIRECTORY = "example-projections";
+	private static final String SUFFIX = ".csr";
+	// magic, version, transaction id, node count, edge count
+	private static final int FIXED_HEADER = 4 + 4 + 8 + 4 + 4;
+
+	private ProjectionSnapshot() {
+	}
+
+	// last committed transaction id of the store
+	public static long lastCommittedTxId(final GraphDatabaseService db) {
+		return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(TransactionIdStore.class, DependencyResolver.SelectionStrategy.ONLY).getLastCommittedTransactionId();
+	}
+
+	// snapshot file of a projection name
+	public static File file(final GraphDatabaseService db, final String name) {
+		if (!name.matches("[A-Za-z0-9_-]+")) {
+			throw new IllegalArgumentException("Projection name for a snapshot must be letters, digits, '_' or '-': " + name);
+		}
+		final File directory = new File(((GraphDatabaseAPI) db).databaseLayout().databaseDirectory(), DIRECTORY);
+		return new File(directory, name + SUFFIX);
+	}
+
+	// write projection (to a temporary file first, so that a mapping of the old file stays valid)
+	public static void save(final Projection projection, final File file) {
+		final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try {
+			Files.createDirectories(file.getParentFile().toPath());
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				final int n = projection.nodeCount();
+				final int m = projection.edgeCount();
+				final byte[][] strings = { bytes(projection.label()), bytes(projection.relationshipType()), bytes(projection.weightProperty()) };
+				int header = FIXED_HEADER;
+				for (final byte[] string : strings) {
+					header += 4 + (string == null ? 0 : string.length);
+				}
+				final ByteBuffer buffer = ByteBuffer.allocate(align(header)).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(VERSION).putLong(projection.lastTxId()).putInt(n).putInt(m);
+				for (final byte[] string : strings) {
+					buffer.putInt(string == null ? -1 : string.length);
+					if (string != null) {
+						buffer.put(string);
+					}
+				}
+				buffer.position(buffer.capacity());
+				write(channel, buffer);
+				final Section out = new Section(channel);
+				for (int i = 0; i < n; i++) {
+					out.putLong(projection.nodeId(i));
+				}
+				out.end();
+				for (int i = 0; i <= n; i++) {
+					out.putInt(projection.offset(i));
+				}
+				out.end();
+				for (int e = 0; e < m; e++) {
+					out.putInt(projection.target(e));
+				}
+				out.end();
+				for (int e = 0; e < m; e++) {
+					out.putDouble(projection.weight(e));
+				}
+				out.end();
+				for (int e = 0; e < m; e++) {
+					out.putLong(projection.relationshipId(e));
+				}
+				out.end();
+				channel.force(true);
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Can't write projection snapshot " + file, e);
+		}
+	}
+
+	// map projection of snapshot file, null if it doesn't exist
+	public static Projection open(final File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer fixed = read(channel, FIXED_HEADER);
+			if (fixed.getInt() != MAGIC) {
+				throw new IllegalStateException("Not a projection snapshot: " + file);
+			}
+			final int version = fixed.getInt();
+			if (version != VERSION) {
+				throw new IllegalStateException("Unsupported projection snapshot version " + version + ": " + file);
+			}
+			final long last_tx_id = fixed.getLong();
+			final int n = fixed.getInt();
+			final int m = fixed.getInt();
+			final String label = string(channel);
+			final String rel_type = string(channel);
+			final String weight_property = string(channel);
+			long position = align(channel.position());
+			// mappings stay valid after the channel is closed
+			final ByteBuffer node_ids = map(channel, position, 8L * n);
+			position += align(8L * n);
+			final ByteBuffer offsets = map(channel, position, 4L * (n + 1));
+			position += align(4L * (n + 1));
+			final ByteBuffer targets = map(channel, position, 4L * m);
+			position += align(4L * m);
+			final ByteBuffer weights = map(channel, position, 8L * m);
+			position += align(8L * m);
+			final ByteBuffer rel_ids = map(channel, position, 8L * m);
+			return new Projection(node_ids.asLongBuffer(), offsets.asIntBuffer(), targets.asIntBuffer(), weights.asDoubleBuffer(), rel_ids.asLongBuffer(),
+					label, rel_type, weight_property, last_tx_id);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Can't open projection snapshot " + file, e);
+		}
+	}
+
+	private static ByteBuffer map(final FileChannel channel, final long position, final long size) throws IOException {
+		if (position + size > channel.size()) {
+			throw new IllegalStateException("Projection snapshot is truncated");
+		}
+		// (a mapping is limited to 2GB)
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Projection snapshot section is too large to map: " + size);
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final int size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IllegalStateException("Projection snapshot is truncated");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	// length (-1 for null) and UTF-8 bytes
+	private static String string(final FileChannel channel) throws IOException {
+		final int length = read(channel, 4).getInt();
+		return length < 0 ? null : new String(read(channel, length).array(), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(final String string) {
+		return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int align(final int size) {
+		return (size + 7) & ~7;
+	}
+
+	private static long align(final long size) {
+		return (size + 7) & ~7L;
+	}
+
+	private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// buffered writer of a section
+	private static class Section {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long written = 0;
+
+		Section(final FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(final int value) throws IOException {
+			room(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(final long value) throws IOException {
+			room(8);
+			buffer.putLong(value);
+		}
+
+		void putDouble(final double value) throws IOException {
+			room(8);
+			buffer.putDouble(value);
+		}
+
+		// pad section to 8 bytes and flush
+		void end() throws IOException {
+			final long size = written + buffer.position();
+			final int padding = (int) (align(size) - size);
+			room(padding);
+			for (int i = 0; i < padding; i++) {
+				buffer.put((byte) 0);
+			}
+			write(channel, buffer);
+			written = 0;
+		}
+
+		private void room(final int size) throws IOException {
+			if (buffer.remaining() < size) {
+				written += buffer.position();
+				write(channel, buffer);
+			}
+		}
+	}
+}
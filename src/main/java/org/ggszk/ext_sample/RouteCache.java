@@ -0,0 +1,136 @@
+package org.ggszk.ext_sample;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Weight-bounded LRU cache of point-to-point routing results
+ *
+ * Keyed by procedure, end points, extra parameters (e.g. categories) and
+ * config. A result is stored as the id array of its route (relationship ids,
+ * or node ids for output 'ids') with its cost, or as NONE for no route; its
+ * weight is the number of ids plus a fixed overhead. Any commit that may change
+ * a route clears the whole cache, and the version taken before a search keeps
+ * a result computed before that commit from being stored after it.
+ */
+public class RouteCache {
+	// weight of an entry besides its ids
+	private static final int OVERHEAD = 16;
+
+	// cached result of one call
+	public static class Route {
+		// relationship ids of the path or node ids, null for no route
+		public final long[] ids;
+		public final double cost;
+		public final long depth;
+		// POI node id of sample9_1, -1 if none
+		public final long poi_id;
+
+		public Route(final long[] ids, final double cost, final long depth, final long poi_id) {
+			this.ids = ids;
+			this.cost = cost;
+			this.depth = depth;
+			this.poi_id = poi_id;
+		}
+
+		long weight() {
+			return (ids == null ? 0 : ids.length) + OVERHEAD;
+		}
+	}
+
+	// no route between the end points
+	public static final Route NONE = new Route(null, 0.0, 0, -1);
+
+	private final long capacity;
+	// access ordered: least recently used first
+	private final LinkedHashMap<String, Route> routes = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight = 0;
+	private long version = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	public RouteCache(final long capacity) {
+		this.capacity = capacity;
+	}
+
+	// key of a call (config entries that don't change the result are left out)
+	public static String key(final String procedure, final long from_id, final long to_id, final Object params, final Map<String, Object> config) {
+		final Map<String, Object> sorted = new TreeMap<>(config);
+		sorted.remove("profile");
+		sorted.remove("cache");
+		return procedure + " " + from_id + " " + to_id + " " + params + " " + sorted;
+	}
+
+	// cached result, null if not cached
+	public synchronized Route get(final String key) {
+		final Route route = routes.get(key);
+		if (route == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return route;
+	}
+
+	// version to pass to put, read it before the search
+	public synchronized long version() {
+		return version;
+	}
+
+	// cache result of a search started under version (ignored if cleared since)
+	public synchronized void put(final String key, final Route route, final long read_version) {
+		if (version != read_version || route.weight() > capacity) {
+			return;
+		}
+		final Route old = routes.put(key, route);
+		weight += route.weight() - (old == null ? 0 : old.weight());
+		// evict least recently used
+		final Iterator<Route> it = routes.values().iterator();
+		while (weight > capacity) {
+			weight -= it.next().weight();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	// remove all results, and ignore puts of searches started before
+	public synchronized void clear() {
+		version++;
+		invalidations += routes.size();
+		routes.clear();
+		weight = 0;
+	}
+
+	public long capacity() {
+		return capacity;
+	}
+
+	public synchronized long size() {
+		return routes.size();
+	}
+
+	public synchronized long weight() {
+		return weight;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	public synchronized long invalidations() {
+		return invalidations;
+	}
+}
@@ -0,0 +1,196 @@
+package org.ggszk.ext_sample;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * Rows of values encoded in one growing byte array
+ *
+ * Each value is a tag byte followed by its data: integers as zigzag varints,
+ * doubles as 8 bytes, strings as varint length and UTF-8 bytes, lists and maps
+ * as varint size and their values (map keys as strings). Other values are kept
+ * as their string form. A row is its column values in order, found by its
+ * offset, and is decoded again when it is read. Nothing is kept per row but
+ * its bytes and one int offset, so a million rows of a few numbers take a few
+ * megabytes. Not thread-safe.
+ */
+public class RowBuffer {
+	private static final byte NULL = 0;
+	private static final byte FALSE = 1;
+	private static final byte TRUE = 2;
+	private static final byte INTEGER = 3;
+	private static final byte FLOAT = 4;
+	private static final byte STRING = 5;
+	private static final byte LIST = 6;
+	private static final byte MAP = 7;
+
+	private final int max_bytes;
+	private byte[] bytes = new byte[1 << 12];
+	private int size = 0;
+	// row -> offset of its first value
+	private final IntArrayList offsets = new IntArrayList();
+
+	public RowBuffer(final int max_bytes) {
+		this.max_bytes = max_bytes;
+	}
+
+	public int rowCount() {
+		return offsets.size();
+	}
+
+	// size of the encoded rows in bytes
+	public int byteSize() {
+		return size;
+	}
+
+	// append a row, false (and nothing appended) if it would exceed max_bytes
+	public boolean add(final Object[] values) {
+		final int start = size;
+		try {
+			for (final Object value : values) {
+				write(value);
+			}
+		} catch (final IllegalStateException e) {
+			size = start;
+			return false;
+		}
+		offsets.add(start);
+		return true;
+	}
+
+	// values of a row with columns columns
+	public Object[] get(final int row, final int columns) {
+		final int[] position = { offsets.get(row) };
+		final Object[] values = new Object[columns];
+		for (int c = 0; c < columns; c++) {
+			values[c] = read(position);
+		}
+		return values;
+	}
+
+	private void write(final Object value) {
+		if (value == null) {
+			put(NULL);
+		} else if (value instanceof Boolean) {
+			put((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			put(INTEGER);
+			putVarLong(((Number) value).longValue());
+		} else if (value instanceof Number) {
+			put(FLOAT);
+			final long bits = Double.doubleToRawLongBits(((Number) value).doubleValue());
+			for (int i = 0; i < 8; i++) {
+				put((byte) (bits >>> (8 * i)));
+			}
+		} else if (value instanceof List) {
+			final List<?> list = (List<?>) value;
+			put(LIST);
+			putVarLong(list.size());
+			for (final Object v : list) {
+				write(v);
+			}
+		} else if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			put(MAP);
+			putVarLong(map.size());
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				putString(String.valueOf(entry.getKey()));
+				write(entry.getValue());
+			}
+		} else {
+			put(STRING);
+			putString(value.toString());
+		}
+	}
+
+	private Object read(final int[] position) {
+		switch (bytes[position[0]++]) {
+		case NULL:
+			return null;
+		case FALSE:
+			return false;
+		case TRUE:
+			return true;
+		case INTEGER:
+			return getVarLong(position);
+		case FLOAT:
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (bytes[position[0]++] & 0xffL) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		case STRING:
+			return getString(position);
+		case LIST:
+			final int n = (int) getVarLong(position);
+			final List<Object> list = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				list.add(read(position));
+			}
+			return list;
+		case MAP:
+			final int m = (int) getVarLong(position);
+			final Map<String, Object> map = new LinkedHashMap<>();
+			for (int i = 0; i < m; i++) {
+				final String key = getString(position);
+				map.put(key, read(position));
+			}
+			return map;
+		default:
+			throw new IllegalStateException("Corrupt row buffer at " + (position[0] - 1));
+		}
+	}
+
+	private void put(final byte b) {
+		if (size == bytes.length) {
+			if (size >= max_bytes) {
+				throw new IllegalStateException("Row buffer is full");
+			}
+			bytes = Arrays.copyOf(bytes, (int) Math.min(max_bytes, bytes.length * 2L));
+		}
+		bytes[size++] = b;
+	}
+
+	// zigzag varint: small magnitudes take one byte
+	private void putVarLong(final long value) {
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7fL) != 0) {
+			put((byte) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		put((byte) v);
+	}
+
+	private long getVarLong(final int[] position) {
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[position[0]++];
+			v |= (b & 0x7fL) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private void putString(final String string) {
+		final byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+		putVarLong(utf8.length);
+		for (final byte b : utf8) {
+			put(b);
+		}
+	}
+
+	private String getString(final int[] position) {
+		final int length = (int) getVarLong(position);
+		final String string = new String(bytes, position[0], length, StandardCharsets.UTF_8);
+		position[0] += length;
+		return string;
+	}
+}
@@ -1,23 +1,39 @@
 package org.ggszk.ext_sample;
 
+import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.map.mutable.primitive.LongDoubleHashMap;
 import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
 
 /**
  * Samples for Neo4j graph algorithm
@@ -35,6 +51,10 @@ public class Sample {
 	@Context
 	public Log log;
 
+	// to stop traversals of a terminated transaction
+	@Context
+	public TerminationGuard guard;
+
 	// result class for samples
 	public class Output {
 		public String out;
@@ -42,6 +62,19 @@ public class Sample {
 		public Path path;
 		public double cost;
 		public Node poi;
+		// POIs of the stops of a sequenced trip (their ids for output 'ids')
+		public List<Node> pois;
+		public List<Long> poiIds;
+		public long depth;
+		// output 'ids' of config: node id, parent node id (null for start node)
+		// of traversals and node ids of routes, instead of node and path
+		public Long nodeId;
+		public Long parentId;
+		public List<Long> nodeIds;
+		// work counters of the call, if config.profile is true
+		public Map<String, Object> profile;
+		// OK, or the limit of config that stopped the traversal (see Budget)
+		public String status;
 	}
 
 	// sample4_1
@@ -56,75 +89,142 @@ public class Sample {
 	// sample4_2
 	@Procedure(value = "example.sample4_2")
 	@Description("sample4_2: return adjacent paths for given node id")
-	public Stream<Output> sample4_2(@Name("id") final Long id) {
+	public Stream<Output> sample4_2(@Name("id") final Long id, @Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
 		final Node from_nd = db.getNodeById(id);
-		final Iterable<Relationship> rels = from_nd.getRelationships();
 		final List<Output> o_l = new ArrayList<Output>();
-		for (final Relationship rel : rels) {
-			PathImpl.Builder builder = new PathImpl.Builder(from_nd);
-			builder = builder.push(rel);
-			final Output o = new Output();
-			o.path = builder.build();
-			o_l.add(o);
+		for (final Iterable<Relationship> rels : relationships(from_nd, TraversalSpec.of(config))) {
+			for (final Relationship rel : rels) {
+				PathImpl.Builder builder = new PathImpl.Builder(from_nd);
+				builder = builder.push(rel);
+				final Output o = new Output();
+				o.path = builder.build();
+				o_l.add(o);
+			}
 		}
 		return o_l.stream();
 	}
 
+	// relationships of node followed by spec, each once
+	// (entries are merged into a direction of any type and one per type, like KernelAdjacency)
+	public static List<Iterable<Relationship>> relationships(final Node node, final TraversalSpec spec) {
+		if (spec.allRelationships()) {
+			return Collections.singletonList(node.getRelationships());
+		}
+		Direction any = null;
+		final Map<String, Direction> types = new LinkedHashMap<>();
+		for (final TraversalSpec.Entry entry : spec.relationships) {
+			if (entry.type == null) {
+				any = merge(any, entry.direction);
+			} else {
+				types.put(entry.type, merge(types.get(entry.type), entry.direction));
+			}
+		}
+		final List<Iterable<Relationship>> rels = new ArrayList<>();
+		if (any != null) {
+			rels.add(node.getRelationships(any));
+		}
+		for (final Map.Entry<String, Direction> type : types.entrySet()) {
+			// directions not followed for any type already
+			final Direction direction = any == null ? type.getValue()
+					: any == Direction.BOTH || any == type.getValue() ? null
+					: type.getValue() == Direction.BOTH ? any.reverse() : type.getValue();
+			if (direction == null) {
+				continue;
+			}
+			final Iterable<Relationship> typed = node.getRelationships(direction, RelationshipType.withName(type.getKey()));
+			// loops are both outgoing and incoming, so already followed for any type
+			rels.add(any == null ? typed
+					: () -> StreamSupport.stream(typed.spliterator(), false).filter(r -> r.getStartNodeId() != r.getEndNodeId()).iterator());
+		}
+		return rels;
+	}
+
+	private static Direction merge(final Direction a, final Direction b) {
+		return a == null || a == b ? b : Direction.BOTH;
+	}
+
 	// sample6_1: BFS
 	@Procedure(value = "example.sample6_1")
 	@Description("sample6_1: BFS")
-	public Stream<Output> sample6_1(@Name("id") final Long id) {
+	public Stream<Output> sample6_1(@Name("id") final Long id, @Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
 		// start node
 		final Node start_nd = db.getNodeById(id);
-		// map for keeping Node and parent relationship
-		final Map<Node, Relationship> parent = new HashMap<>();
-		// to avoid coming back to start node
-		parent.put(start_nd, null);
-		// array for checking whether the node was visited
-		final List<Node> visited = new ArrayList<>();
-		// queue
-		final Queue<Node> queue = new ArrayDeque<>();
-		// current node
-		Node c_nd = start_nd;
-		// list for result
-		final List<Output> o_l = new ArrayList<>();
-		// end if queue is empty
-		while (c_nd != null) {
-			final Iterable<Relationship> rels = c_nd.getRelationships();
-			if (!(visited.contains(c_nd))) {
-				for (final Relationship rel : rels) {
-					// if not visited add next node
-					final Node n_nd = rel.getOtherNode(c_nd);
-					if (!parent.containsKey(n_nd)) {
-						queue.add(n_nd);
-						parent.put(n_nd, rel);
-					}
+		final Counters counters = new Counters();
+		final boolean profile = profile(config);
+		final TraversalSpec spec = TraversalSpec.of(config);
+		// parallel mode: each level is expanded by worker threads
+		if (Boolean.TRUE.equals(config.get("parallel"))) {
+			final Number concurrency = (Number) config.getOrDefault("concurrency", Workers.pool.getParallelism());
+			final ParallelBfs bfs = new ParallelBfs(db, spec, start_nd.getId(), concurrency.intValue(), counters, Budget.of(config, guard));
+			final boolean ids = ids(config);
+			return StreamSupport.longStream(bfs, false).mapToObj(c_id -> {
+				final Output o = new Output();
+				if (ids) {
+					o.nodeId = c_id;
+					o.parentId = bfs.parentId() == NodeTraversal.NO_PARENT ? null : bfs.parentId();
+				} else {
+					o.node = db.getNodeById(c_id);
+					o.path = getPath(start_nd.getId(), c_id, bfs.parents()::get);
 				}
-				visited.add(c_nd);
-			}
-			final Output o = new Output();
-			o.node = c_nd;
-			// get path from start_nd to c_nd
-			o.path = getPath(start_nd, c_nd, parent);
-			o_l.add(o);
-			// get next node from queue
-			c_nd = queue.poll();
+				o.depth = bfs.depth();
+				o.status = bfs.status();
+				o.profile = profile ? counters.toMap() : null;
+				return o;
+			}).onClose(() -> Metrics.of("example.sample6_1").record(counters));
 		}
-		return o_l.stream();
+		// nodes are visited lazily while the result is consumed
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, spec, false);
+		return traverse(start_nd, new NodeTraversal(adjacency, start_nd.getId(), false, counters, Budget.of(config, guard)), ids(config),
+				profile ? counters : null)
+				.onClose(adjacency::close).onClose(() -> Metrics.of("example.sample6_1").record(counters));
+	}
+
+	// sample6_2: DFS
+	@Procedure(value = "example.sample6_2")
+	@Description("sample6_2: DFS")
+	public Stream<Output> sample6_2(@Name("id") final Long id, @Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		// start node
+		final Node start_nd = db.getNodeById(id);
+		final Counters counters = new Counters();
+		// nodes are visited lazily while the result is consumed
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, TraversalSpec.of(config), false);
+		return traverse(start_nd, new NodeTraversal(adjacency, start_nd.getId(), true, counters, Budget.of(config, guard)), ids(config),
+				profile(config) ? counters : null)
+				.onClose(adjacency::close).onClose(() -> Metrics.of("example.sample6_2").record(counters));
+	}
+
+	// stream of visited nodes and paths to them, or of their ids and parent ids if ids
+	// (profile: counters so far are added to each row, null for no profile)
+	public Stream<Output> traverse(final Node start_nd, final NodeTraversal traversal, final boolean ids, final Counters profile) {
+		return StreamSupport.longStream(traversal, false).mapToObj(c_id -> {
+			final Output o = new Output();
+			if (ids) {
+				o.nodeId = c_id;
+				o.parentId = traversal.parentId() == NodeTraversal.NO_PARENT ? null : traversal.parentId();
+			} else {
+				o.node = db.getNodeById(c_id);
+				// get path from start_nd to c_nd
+				o.path = getPath(start_nd.getId(), c_id, traversal.parents()::get);
+			}
+			o.depth = traversal.depth();
+			o.status = traversal.status();
+			o.profile = profile == null ? null : profile.toMap();
+			return o;
+		});
 	}
 
-	// construct path from parent relationships
-	public Path getPath(final Node frm_nd, final Node to_nd, final Map<Node, Relationship> parent) {
-		PathImpl.Builder builder = new PathImpl.Builder(frm_nd);
+	// construct path from parent relationship ids
+	public Path getPath(final long frm_id, final long to_id, final LongUnaryOperator parent) {
 		// queue
 		final Deque<Relationship> queue = new ArrayDeque<>();
 
-		Node tmp_nd = to_nd;
-		while (!tmp_nd.equals(frm_nd)) {
-			final Relationship r = parent.get(tmp_nd);
+		long tmp_id = to_id;
+		while (tmp_id != frm_id) {
+			final Relationship r = db.getRelationshipById(parent.applyAsLong(tmp_id));
 			queue.push(r);
-			tmp_nd = r.getOtherNode(tmp_nd);
+			tmp_id = r.getOtherNodeId(tmp_id);
 		}
+		PathImpl.Builder builder = new PathImpl.Builder(db.getNodeById(frm_id));
 		Relationship tmp_r = queue.poll();
 		while (tmp_r != null) {
 			builder = builder.push(tmp_r);
@@ -133,397 +233,1162 @@ public class Sample {
 		return builder.build();
 	}
 
-	// sample6_2: DFS
-	@Procedure(value = "example.sample6_2")
-	@Description("sample6_2: DFS")
-	public Stream<Output> sample6_2(@Name("id") final Long id) {
-		// start node
-		final Node start_nd = db.getNodeById(id);
-		// map for keeping Node id and parent relationship
-		final Map<Node, Relationship> parent = new HashMap<>();
-		// to avoid coming back to start node
-		parent.put(start_nd, null);
-		// array for checking whether the node was visited
-		final List<Node> visited = new ArrayList<>();
-		// queue
-		final Deque<Node> queue = new ArrayDeque<>();
-		// current node
-		Node c_nd = start_nd;
-		// list for result
-		final List<Output> o_l = new ArrayList<>();
-		// end if queue is empty
-		while (c_nd != null) {
-			final Iterable<Relationship> rels = c_nd.getRelationships();
-			if (!(visited.contains(c_nd))) {
-				for (final Relationship rel : rels) {
-					// if not visited add next node
-					final Node n_nd = rel.getOtherNode(c_nd);
-					if (!parent.containsKey(n_nd)) {
-						queue.push(n_nd);
-						parent.put(n_nd, rel);
-					}
-				}
-				visited.add(c_nd);
-			}
-			final Output o = new Output();
-			o.node = c_nd;
-			// get path from start_nd to c_nd
-			o.path = getPath(start_nd, c_nd, parent);
-			o_l.add(o);
-			// get next node from queue
-			c_nd = queue.poll();
-		}
-		return o_l.stream();
-	}
-
 	// sample8_1: djkstra
 	@Procedure(value = "example.sample8_1")
 	@Description("sample8_1: djkstra")
-	public Stream<Output> sample8_1(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+	public Stream<Output> sample8_1(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
 		final Node from_nd = db.getNodeById(from_id);
 		final Node to_nd = db.getNodeById(to_id);
-		// Priority Queue by cost property value
-		final PriorityQueue<NodeInfo> pq = new PriorityQueue<>((n1, n2) -> Double.compare(n1.cost, n2.cost));
-		// map for keeping node and cost
-		final Map<Node, NodeInfo> nodes = new HashMap<>();
-		// map for keeping Node and parent relationship
-		final Map<Node, Relationship> parent = new HashMap<>();
-
-		// current node(info)
-		NodeInfo cur_ni = new NodeInfo(from_nd, 0.0);
-		pq.add(cur_ni);
-		nodes.put(from_nd, cur_ni);
-
-		// if to_node's cost is fixed, exit
-		NodeInfo to_ni = null;
-		while (to_ni == null || to_ni.done != true) {
-			// if queue is empty, no route exit
-			if (cur_ni == null) {
-				return new ArrayList<Output>().stream();
+		return cachedRoute("example.sample8_1", from_nd.getId(), to_nd.getId(), null, config, () -> {
+			final Counters counters = new Counters();
+			if (disconnected(from_nd.getId(), to_nd.getId())) {
+				return finish("example.sample8_1", counters, config, Stream.empty());
+			}
+			try (KernelAdjacency adjacency = KernelAdjacency.of(db, TraversalSpec.of(config), true)) {
+				return finish("example.sample8_1", counters, config, dijkstra(adjacency, from_nd.getId(), to_nd.getId(), from_nd.getId(), ids(config), counters,
+						Budget.of(config, guard)));
+			}
+		});
+	}
+
+	// djkstra from from_id to to_id of the adjacency
+	// (start_id is the Neo4j node id of from_id, for path construction;
+	// ids: node ids instead of path, only for adjacencies on node ids)
+	public Stream<Output> dijkstra(final Adjacency adjacency, final long from_id, final long to_id, final long start_id, final boolean ids,
+			final Counters counters, final Budget budget) {
+		// search state: indexed heap and primitive cost / parent arrays
+		final Dijkstra sp = new Dijkstra(adjacency, from_id, null, counters);
+
+		// if queue is empty, no route exit
+		while (!sp.isEmpty()) {
+			// budget ran out: the route costs at least the next node's cost
+			final String status = budget.check(counters.nodes_settled, sp.peekCost());
+			if (status != null) {
+				return Stream.of(partial(status, sp.peekCost()));
 			}
 			// top node of queue's cost is fixed
-			cur_ni = pq.poll();
-			cur_ni.done = true;
-			// get adjacent nodes and add them to queue
-			// Property for cost: type must be double
-			final String cost_property = "cost";
-			final Iterable<Relationship> rels = cur_ni.nd.getRelationships();
-			for (final Relationship rel : rels) {
-				// get adjacent nodes and their costs
-				final Node o_nd = rel.getOtherNode(cur_ni.nd);
-				final double cost_rel = (double) rel.getProperty(cost_property);
-				// check whether the node was found
-				NodeInfo next_ni = nodes.get(o_nd);
-				// not found -> 1st appearance of the node, add it to map
-				if (next_ni == null) {
-					next_ni = new NodeInfo(o_nd, cur_ni.cost + cost_rel);
-					pq.add(next_ni);
-					nodes.put(o_nd, next_ni);
-					parent.put(o_nd, rel);
-				}
-				// found but cost is't fixed and has lower cost -> overwrite cost
-				else if (next_ni.done == false) {
-					if (next_ni.cost > cur_ni.cost + cost_rel) {
-						next_ni.cost = cur_ni.cost + cost_rel;
-						parent.put(o_nd, rel);
-					}
+			final int slot = sp.poll();
+			// if to_node's cost is fixed, exit
+			if (sp.nodeId(slot) == to_id) {
+				// output construction
+				final Output o = new Output();
+				if (ids) {
+					o.nodeIds = asList(sp.nodePath(slot));
+				} else {
+					o.path = getPath(start_id, sp.path(slot));
 				}
-				// found and cost was fixed -> do nothing
+				o.cost = sp.cost(slot);
+				o.status = Budget.OK;
+				return Stream.of(o);
 			}
-			// get to_node from map
-			to_ni = nodes.get(to_nd);
+			// get adjacent nodes and add them to queue
+			sp.expand(slot);
 		}
-		// output construction
-		final Output o = new Output();
-		o.path = getPath(from_nd, to_nd, parent);
-		o.cost = to_ni.cost;
-		// list for result
-		final List<Output> o_l = new ArrayList<>();
-		o_l.add(o);
-		return o_l.stream();
+		return Stream.empty();
 	}
 
 	// sample8_2: bidirectional djkstra
 	@Procedure(value = "example.sample8_2")
 	@Description("sample8_2: bidirectional djkstra")
-	public Stream<Output> sample8_2(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+	public Stream<Output> sample8_2(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
 		final Node from_nd = db.getNodeById(from_id);
 		final Node to_nd = db.getNodeById(to_id);
-		// Priority Queue by cost property value
-		final PriorityQueue<NodeInfo> pq_f = new PriorityQueue<>((n1, n2) -> Double.compare(n1.cost, n2.cost));
-		final PriorityQueue<NodeInfo> pq_t = new PriorityQueue<>((n1, n2) -> Double.compare(n1.cost, n2.cost));
-		// map for keeping node and cost
-		final Map<Node, NodeInfo> nodes_f = new HashMap<>();
-		final Map<Node, NodeInfo> nodes_t = new HashMap<>();
-		// map for keeping Node and parent relationship
-		final Map<Node, Relationship> parent_f = new HashMap<>();
-		final Map<Node, Relationship> parent_t = new HashMap<>();
-		
-		// current node(info)
-		NodeInfo cur_ni_f = new NodeInfo(from_nd, 0.0);
-		pq_f.add(cur_ni_f);
-		nodes_f.put(from_nd, cur_ni_f);
-		NodeInfo cur_ni_t = new NodeInfo(to_nd, 0.0);
-		pq_t.add(cur_ni_t);
-		nodes_t.put(to_nd, cur_ni_t);
+		return cachedRoute("example.sample8_2", from_nd.getId(), to_nd.getId(), null, config, () -> {
+			final Counters counters = new Counters();
+			if (disconnected(from_nd.getId(), to_nd.getId())) {
+				return finish("example.sample8_2", counters, config, Stream.empty());
+			}
+			final TraversalSpec spec = TraversalSpec.of(config);
+			// to-side follows relationships backwards
+			try (KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true);
+					KernelAdjacency adjacency_t = spec.undirected() ? null : KernelAdjacency.of(db, spec.reverse(), true)) {
+				return finish("example.sample8_2", counters, config, bidirectionalDijkstra(adjacency, adjacency_t == null ? adjacency : adjacency_t,
+						from_nd.getId(), to_nd.getId(), from_nd.getId(), null, null, ids(config), counters, Budget.of(config, guard)));
+			}
+		});
+	}
+
+	// bidirectional djkstra from from_id to to_id of the adjacency
+	// (start_id is the Neo4j node id of from_id, for path construction)
+	public Stream<Output> bidirectionalDijkstra(final Adjacency adjacency, final long from_id, final long to_id, final long start_id, final Counters counters,
+			final Budget budget) {
+		return bidirectionalDijkstra(adjacency, adjacency, from_id, to_id, start_id, null, null, false, counters, budget);
+	}
+
+	// bidirectional djkstra (A* if potentials are given; to-side potential must be
+	// the negated from-side potential, so f-side cost + t-side cost of a node is path cost)
+	// (adjacency_t is the reverse of adjacency_f for directed traversals; ids as in dijkstra)
+	public Stream<Output> bidirectionalDijkstra(final Adjacency adjacency_f, final Adjacency adjacency_t, final long from_id, final long to_id,
+			final long start_id, final Dijkstra.Potential potential_f, final Dijkstra.Potential potential_t, final boolean ids, final Counters counters,
+			final Budget budget) {
+		// search state for from-side and to-side
+		final Dijkstra sp_f = new Dijkstra(adjacency_f, from_id, potential_f, counters);
+		final Dijkstra sp_t = new Dijkstra(adjacency_t, to_id, potential_t, counters);
 
 		// node that f-side path and t-side path meets
-		NodeInfo min_ni_f = null;
-		NodeInfo min_ni_t = null;
+		long min_id = -1;
 
 		// variables for checking to exit
-		double total_cost = 100000; // 100000 is infinity
-
-		// Result
-		final Output o = new Output();
+		double total_cost = Double.POSITIVE_INFINITY;
+		// lower bound of cost of paths not found yet, and status of the result
+		double bound = 0.0;
+		String status = Budget.OK;
 
 		// Path finding
 		while(true) {
-			// if one queue is empty, no route exit
-			if(cur_ni_f == null || cur_ni_t == null) {
-				return new ArrayList<Output>().stream();
-			}
-			// exit when found to node in the from-side
-			if(cur_ni_f.nd.equals(to_nd)) {
-				o.path = getPath(from_nd, min_ni_f.nd, parent_f);
-	    		o.cost = cur_ni_f.cost;
-	    		break;
-			}
-			// exit when found from node in the to-side
-			if(cur_ni_t.nd.equals(from_nd)) {
-	    		o.path = reverse(getPath(to_nd, min_ni_t.nd, parent_t));
-	    		o.cost = cur_ni_t.cost;
-	    		break;			
-			}
-		    // exit when cannot find shorter path (triangle inequality)
+			// if one queue is empty, every node reachable from that side is fixed
+			final double top_f = sp_f.isEmpty() ? Double.POSITIVE_INFINITY : sp_f.peekCost();
+			final double top_t = sp_t.isEmpty() ? Double.POSITIVE_INFINITY : sp_t.peekCost();
+			// exit when cannot find shorter path (triangle inequality)
 			// (total cost) < (current f-side cost) + (current t-side cost)
-	    	if(cur_ni_f.cost + cur_ni_t.cost > total_cost){
-	    		final Path f_path = getPath(from_nd, min_ni_f.nd, parent_f);
-	    		final Path t_path = getPath(to_nd, min_ni_t.nd, parent_t);
-	    		o.path = cat(f_path, reverse(t_path));
-	    		o.cost = total_cost;
-	    		break;
+			bound = top_f + top_t;
+			if (bound > total_cost || bound == Double.POSITIVE_INFINITY) {
+				break;
+			}
+			// budget ran out: return the best path found so far, if any
+			final String over = budget.check(counters.nodes_settled, bound);
+			if (over != null) {
+				status = over;
+				break;
 			}
 			// expand from-side
-			if(pq_f.peek().cost <= pq_t.peek().cost){
+			if (top_f <= top_t) {
 				// top node of queue's cost is fixed
-				cur_ni_f = pq_f.poll();
-				cur_ni_f.done = true;
+				final int slot = sp_f.poll();
 				// find the node in the other side
-				final NodeInfo ni_t = nodes_t.get(cur_ni_f.nd);
-				// the node is in the other side map and total_cost can be lower
-				if(ni_t != null && total_cost > cur_ni_f.cost + ni_t.cost) {
-					min_ni_f = cur_ni_f;
-					min_ni_t = ni_t;
-					total_cost = cur_ni_f.cost + ni_t.cost;					
+				final int o_slot = sp_t.slotOf(sp_f.nodeId(slot));
+				// the node is in the other side and total_cost can be lower
+				if (o_slot >= 0 && total_cost > sp_f.cost(slot) + sp_t.cost(o_slot)) {
+					min_id = sp_f.nodeId(slot);
+					total_cost = sp_f.cost(slot) + sp_t.cost(o_slot);
 				}
 				// get adjacent nodes and add them to queue
-				// Property for cost: type must be double
-				getAdjacentNodes(cur_ni_f, pq_f, nodes_f, parent_f);
+				sp_f.expand(slot);
 			}
 			// expand to-side
-			else{
-				cur_ni_t = pq_t.poll();
-				cur_ni_t.done = true;
-				final NodeInfo ni_f = nodes_f.get(cur_ni_t.nd);	
-				if(ni_f != null && total_cost > ni_f.cost + cur_ni_t.cost) {
-					min_ni_f = ni_f;
-					min_ni_t = cur_ni_t;
-					total_cost = ni_f.cost + cur_ni_t.cost;	
-				}		
-				getAdjacentNodes(cur_ni_t, pq_t, nodes_t, parent_t);
-			}			
-		}
-		// list for result
-		final List<Output> o_l = new ArrayList<>();
-		o_l.add(o);
-		return o_l.stream();
+			else {
+				final int slot = sp_t.poll();
+				final int o_slot = sp_f.slotOf(sp_t.nodeId(slot));
+				if (o_slot >= 0 && total_cost > sp_f.cost(o_slot) + sp_t.cost(slot)) {
+					min_id = sp_t.nodeId(slot);
+					total_cost = sp_f.cost(o_slot) + sp_t.cost(slot);
+				}
+				sp_t.expand(slot);
+			}
+		}
+		// no route
+		if (min_id < 0) {
+			return Budget.OK.equals(status) ? Stream.empty() : Stream.of(partial(status, bound));
+		}
+		// Result
+		final Output o = new Output();
+		setRoute(o, start_id, sp_f, sp_t, min_id, ids);
+		o.cost = total_cost;
+		o.status = status;
+		return Stream.of(o);
 	}
 
-	// sample9_1: simple trip plannning query
-	@Procedure(value = "example.sample9_1")
-	@Description("sample9_1: simple trip plannning query")
-	public Stream<Output> sample9_1(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id, @Name("category") final String category) {
+	// single source shortest paths
+	@Procedure(value = "example.sssp")
+	@Description("example.sssp: cost and parent of every node reachable from fromId (config.engine: 'dijkstra' or 'deltaStepping')")
+	public Stream<SsspOutput> sssp(@Name("fromId") final Long from_id, @Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final Node from_nd = db.getNodeById(from_id);
+		final TraversalSpec spec = TraversalSpec.of(config);
+		final Counters counters = new Counters();
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true);
+		final String engine = (String) config.getOrDefault("engine", "dijkstra");
+		final ShortestPathTree tree;
+		switch (engine) {
+		case "dijkstra":
+			tree = ShortestPathTree.dijkstra(adjacency, from_nd.getId(), counters, Budget.of(config, guard));
+			break;
+		case "deltaStepping":
+			final Number delta = (Number) config.get("delta");
+			final Number concurrency = (Number) config.getOrDefault("concurrency", Workers.pool.getParallelism());
+			tree = new DeltaStepping(db, spec, from_nd.getId(), delta == null ? DeltaStepping.defaultDelta(adjacency, from_nd.getId()) : delta.doubleValue(),
+					concurrency.intValue(), counters, Budget.of(config, guard));
+			break;
+		default:
+			adjacency.close();
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+		// nodes are settled lazily while the result is consumed (dijkstra)
+		return StreamSupport.longStream(tree, false).mapToObj(id -> {
+			final SsspOutput o = new SsspOutput();
+			o.nodeId = id;
+			o.cost = tree.cost();
+			o.parentId = tree.parentId() == NodeTraversal.NO_PARENT ? null : tree.parentId();
+			o.status = tree.status();
+			return o;
+		}).onClose(adjacency::close).onClose(() -> Metrics.of("example.sssp").record(counters));
+	}
+
+	// result class for single source shortest paths
+	public class SsspOutput {
+		public long nodeId;
+		public double cost;
+		// null for the start node
+		public Long parentId;
+		// OK, or the limit of config that stopped the search (see Budget)
+		public String status;
+	}
+
+	// nodes within maxCost of the nearest start node
+	// (from is a node id or a list of node ids)
+	@Procedure(value = "example.isochrone")
+	@Description("example.isochrone: nodes reachable within maxCost from any of the start nodes, with the closest one")
+	public Stream<IsochroneOutput> isochrone(@Name("from") final Object from, @Name("maxCost") final Double max_cost,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final long[] start_ids = nodeIds(from);
+		for (final long start_id : start_ids) {
+			// check that start node exists
+			db.getNodeById(start_id);
+		}
+		final Counters counters = new Counters();
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, TraversalSpec.of(config), true);
+		final ShortestPathTree tree = ShortestPathTree.dijkstra(adjacency, start_ids, max_cost, counters, Budget.of(config, guard));
+		// nodes are streamed as soon as they are settled
+		return StreamSupport.longStream(tree, false).mapToObj(id -> {
+			final IsochroneOutput o = new IsochroneOutput();
+			o.nodeId = id;
+			o.sourceId = tree.source();
+			o.cost = tree.cost();
+			o.status = tree.status();
+			return o;
+		}).onClose(adjacency::close).onClose(() -> Metrics.of("example.isochrone").record(counters));
+	}
+
+	// result class for isochrone
+	public class IsochroneOutput {
+		public long nodeId;
+		// closest start node
+		public long sourceId;
+		public double cost;
+		// OK, or the limit of config that stopped the search (see Budget)
+		public String status;
+	}
+
+	// BFS from many start nodes in one pass
+	@Procedure(value = "example.multiSourceBfs")
+	@Description("example.multiSourceBfs: bit-parallel BFS from a list of start nodes, nodes with depth from each start node")
+	public Stream<MultiSourceOutput> multiSourceBfs(@Name("from") final Object from,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final long[] start_ids = nodeIds(from);
+		for (final long start_id : start_ids) {
+			// check that start node exists
+			db.getNodeById(start_id);
+		}
+		final Counters counters = new Counters();
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, TraversalSpec.of(config), false);
+		final MultiSourceBfs bfs = new MultiSourceBfs(adjacency, start_ids, counters, Budget.of(config, guard));
+		// levels are searched lazily while the result is consumed
+		return StreamSupport.longStream(bfs, false).mapToObj(id -> {
+			final MultiSourceOutput o = new MultiSourceOutput();
+			o.sourceId = bfs.source();
+			o.nodeId = id;
+			o.depth = bfs.depth();
+			o.status = bfs.status();
+			return o;
+		}).onClose(adjacency::close).onClose(() -> Metrics.of("example.multiSourceBfs").record(counters));
+	}
+
+	// result class for multi-source BFS
+	public class MultiSourceOutput {
+		public long sourceId;
+		public long nodeId;
+		public long depth;
+		// OK, MAX_DEPTH if the node was not expanded, or the limit that stopped the search
+		public String status;
+	}
+
+	// k shortest loopless paths
+	@Procedure(value = "example.kShortestPaths")
+	@Description("example.kShortestPaths: k shortest loopless paths (Yen) in order of cost")
+	public Stream<Output> kShortestPaths(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id, @Name("k") final Long k,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
 		final Node from_nd = db.getNodeById(from_id);
 		final Node to_nd = db.getNodeById(to_id);
-		// Priority Queue by cost property value
-		final PriorityQueue<NodeInfo> pq_f = new PriorityQueue<>((n1, n2) -> Double.compare(n1.cost, n2.cost));
-		final PriorityQueue<NodeInfo> pq_t = new PriorityQueue<>((n1, n2) -> Double.compare(n1.cost, n2.cost));
-		// map for keeping node and cost
-		final Map<Node, NodeInfo> nodes_f = new HashMap<>();
-		final Map<Node, NodeInfo> nodes_t = new HashMap<>();
-		// map for keeping Node and parent relationship
-		final Map<Node, Relationship> parent_f = new HashMap<>();
-		final Map<Node, Relationship> parent_t = new HashMap<>();
-		
-		// current node(info)
-		NodeInfo cur_ni_f = new NodeInfo(from_nd, 0.0);
-		pq_f.add(cur_ni_f);
-		nodes_f.put(from_nd, cur_ni_f);
-		NodeInfo cur_ni_t = new NodeInfo(to_nd, 0.0);
-		pq_t.add(cur_ni_t);
-		nodes_t.put(to_nd, cur_ni_t);
+		final TraversalSpec spec = TraversalSpec.of(config);
+		final Counters counters = new Counters();
+		if (disconnected(from_nd.getId(), to_nd.getId())) {
+			return finish("example.kShortestPaths", counters, config, Stream.empty());
+		}
+		final boolean ids = ids(config);
+		final boolean profile = profile(config);
+		final KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true);
+		// reverse shortest path tree follows relationships backwards
+		final KernelAdjacency adjacency_t = spec.undirected() ? adjacency : KernelAdjacency.of(db, spec.reverse(), true);
+		final KShortestPaths paths = new KShortestPaths(adjacency, adjacency_t, from_nd.getId(), to_nd.getId(), k.intValue(), counters,
+				Budget.of(config, guard));
+		// routes are searched lazily while the result is consumed
+		return StreamSupport.stream(paths, false).map(route -> {
+			final Output o = new Output();
+			if (route.rel_ids != null) {
+				if (ids) {
+					o.nodeIds = asList(route.node_ids);
+				} else {
+					o.path = getPath(from_nd.getId(), route.rel_ids);
+				}
+			}
+			o.cost = route.cost();
+			o.status = route.status;
+			o.profile = profile ? counters.toMap() : null;
+			return o;
+		}).onClose(adjacency::close).onClose(() -> {
+			if (adjacency_t != adjacency) {
+				adjacency_t.close();
+			}
+		}).onClose(() -> Metrics.of("example.kShortestPaths").record(counters));
+	}
 
-		// node that f-side path and t-side path meets
-		NodeInfo min_ni_f = null;
-		NodeInfo min_ni_t = null;
+	// fewest hops path by bidirectional BFS
+	@Procedure(value = "example.shortestHops")
+	@Description("example.shortestHops: path with the fewest hops by BFS from both ends (config.maxDepth: maximum hops)")
+	public Stream<Output> shortestHops(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final Node from_nd = db.getNodeById(from_id);
+		final Node to_nd = db.getNodeById(to_id);
+		return cachedRoute("example.shortestHops", from_nd.getId(), to_nd.getId(), null, config, () -> {
+			final TraversalSpec spec = TraversalSpec.of(config);
+			final Counters counters = new Counters();
+			if (disconnected(from_nd.getId(), to_nd.getId())) {
+				return finish("example.shortestHops", counters, config, Stream.empty());
+			}
+			// to-side follows relationships backwards
+			try (KernelAdjacency adjacency = KernelAdjacency.of(db, spec, false);
+					KernelAdjacency adjacency_t = spec.undirected() ? null : KernelAdjacency.of(db, spec.reverse(), false)) {
+				final BidirectionalBfs bfs = new BidirectionalBfs(adjacency, adjacency_t == null ? adjacency : adjacency_t, from_nd.getId(), to_nd.getId(),
+						counters, Budget.of(config, guard));
+				// no path
+				if (bfs.hops() < 0) {
+					return finish("example.shortestHops", counters, config,
+							Budget.OK.equals(bfs.status()) ? Stream.empty() : Stream.of(partial(bfs.status(), bfs.bound())));
+				}
+				// Result: cost is the number of hops
+				final Output o = new Output();
+				if (ids(config)) {
+					o.nodeIds = asList(bfs.nodePath());
+				} else {
+					o.path = getPath(from_nd.getId(), bfs.path());
+				}
+				o.depth = bfs.hops();
+				o.cost = bfs.hops();
+				o.status = Budget.OK;
+				return finish("example.shortestHops", counters, config, Stream.of(o));
+			}
+		});
+	}
 
-		// variables for checking to exit
-		double total_cost = 100000; // 100000 is infinity
+	// many-to-many djkstra costs
+	@Procedure(value = "example.costMatrix")
+	@Description("example.costMatrix: shortest path costs from every node of fromIds to every node of toIds")
+	public Stream<CostOutput> costMatrix(@Name("fromIds") final List<Long> from_ids, @Name("toIds") final List<Long> to_ids,
+			@Name(value = "withPaths", defaultValue = "false") final Boolean with_paths,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final long[] froms = from_ids.stream().mapToLong(Long::longValue).toArray();
+		final long[] tos = to_ids.stream().mapToLong(Long::longValue).toArray();
+		final Counters counters = new Counters();
+		final SampleExtension extension = SampleExtension.ofCommitted(db);
+		final List<CostMatrix.Entry> entries = CostMatrix.compute(db, TraversalSpec.of(config), froms, tos, with_paths,
+				extension == null ? null : extension.componentIndex(), counters);
+		Metrics.of("example.costMatrix").record(counters);
+		return entries.stream().map(entry -> {
+			final CostOutput o = new CostOutput();
+			o.from = entry.from;
+			o.to = entry.to;
+			o.cost = entry.cost;
+			if (entry.rel_ids != null) {
+				o.path = getPath(entry.from, entry.rel_ids);
+			}
+			return o;
+		});
+	}
 
-		// Result
+	// result class for cost matrix
+	public class CostOutput {
+		public long from;
+		public long to;
+		public double cost;
+		public Path path;
+	}
+
+	// counters of relationship cost cache
+	@Procedure(value = "example.costCache.stats")
+	@Description("example.costCache.stats: hits, misses and size of relationship cost cache")
+	public Stream<CostCacheInfo> costCacheStats() {
+		final SampleExtension extension = SampleExtension.of(db);
+		if (extension == null) {
+			return Stream.empty();
+		}
+		return Stream.of(new CostCacheInfo(extension.costCache()));
+	}
+
+	// result class for cost cache stats
+	public class CostCacheInfo {
+		public long hits;
+		public long misses;
+		public double hitRatio;
+		public long size;
+		public long capacity;
+		public long evictions;
+		public long invalidations;
+
+		public CostCacheInfo(final CostCache cache) {
+			this.hits = cache.hits();
+			this.misses = cache.misses();
+			this.hitRatio = hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+			this.size = cache.size();
+			this.capacity = cache.capacity();
+			this.evictions = cache.evictions();
+			this.invalidations = cache.invalidations();
+		}
+	}
+
+	// load a projection: nodes with label and weighted relationships with relType between them
+	@Procedure(value = "example.projection.load")
+	@Description("example.projection.load: build in-memory CSR graph for routing")
+	public Stream<ProjectionInfo> projectionLoad(@Name("name") final String name, @Name("label") final String label,
+			@Name("relType") final String rel_type, @Name(value = "weightProperty", defaultValue = Dijkstra.COST_PROPERTY) final String weight_property) {
+		final Projection projection = Projection.load(db, label, rel_type, weight_property);
+		Projection.put(name, projection);
+		return Stream.of(new ProjectionInfo(name, projection));
+	}
+
+	// drop a projection
+	@Procedure(value = "example.projection.drop")
+	@Description("example.projection.drop: remove in-memory CSR graph")
+	public Stream<ProjectionInfo> projectionDrop(@Name("name") final String name) {
+		final Projection projection = Projection.remove(name);
+		if (projection == null) {
+			return Stream.empty();
+		}
+		return Stream.of(new ProjectionInfo(name, projection));
+	}
+
+	// save a projection to a snapshot file in the database directory
+	@Procedure(value = "example.projection.save")
+	@Description("example.projection.save: write projection to a snapshot file that example.projection.open maps")
+	public Stream<SnapshotInfo> projectionSave(@Name("name") final String name) {
+		final Projection projection = Projection.get(name);
+		ProjectionSnapshot.save(projection, ProjectionSnapshot.file(db, name));
+		return Stream.of(new SnapshotInfo(name, projection, false));
+	}
+
+	// open a projection from its snapshot file, loading it again if it is stale
+	@Procedure(value = "example.projection.open")
+	@Description("example.projection.open: map projection snapshot file, rebuilt if the store has changed since it was saved")
+	public Stream<SnapshotInfo> projectionOpen(@Name("name") final String name) {
+		final File file = ProjectionSnapshot.file(db, name);
+		Projection projection = ProjectionSnapshot.open(file);
+		if (projection == null) {
+			throw new IllegalArgumentException("No snapshot of projection " + name);
+		}
+		final boolean stale = projection.lastTxId() != ProjectionSnapshot.lastCommittedTxId(db);
+		if (stale) {
+			// load with the parameters of the snapshot, and map the new snapshot
+			ProjectionSnapshot.save(Projection.load(db, projection.label(), projection.relationshipType(), projection.weightProperty()), file);
+			projection = ProjectionSnapshot.open(file);
+		}
+		Projection.put(name, projection);
+		return Stream.of(new SnapshotInfo(name, projection, stale));
+	}
+
+	// result class for projection snapshots
+	public class SnapshotInfo {
+		public String name;
+		public long nodes;
+		public long relationships;
+		// last committed transaction of the store when it was loaded
+		public long lastTxId;
+		// true if the snapshot was stale and loaded again
+		public boolean rebuilt;
+
+		public SnapshotInfo(final String name, final Projection projection, final boolean rebuilt) {
+			this.name = name;
+			this.nodes = projection.nodeCount();
+			this.relationships = projection.relationshipCount();
+			this.lastTxId = projection.lastTxId();
+			this.rebuilt = rebuilt;
+		}
+	}
+
+	// sample8_1 on a projection
+	@Procedure(value = "example.projection.sample8_1")
+	@Description("example.projection.sample8_1: djkstra on projection")
+	public Stream<Output> projectionSample8_1(@Name("name") final String name, @Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+		final Projection projection = Projection.get(name);
+		final Counters counters = new Counters();
+		return finish("example.projection.sample8_1", counters, Collections.emptyMap(),
+				dijkstra(projection, projectionIndex(projection, from_id), projectionIndex(projection, to_id), from_id, false, counters, Budget.unlimited()));
+	}
+
+	// sample8_2 on a projection
+	@Procedure(value = "example.projection.sample8_2")
+	@Description("example.projection.sample8_2: bidirectional djkstra on projection")
+	public Stream<Output> projectionSample8_2(@Name("name") final String name, @Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+		final Projection projection = Projection.get(name);
+		final Counters counters = new Counters();
+		return finish("example.projection.sample8_2", counters, Collections.emptyMap(),
+				bidirectionalDijkstra(projection, projectionIndex(projection, from_id), projectionIndex(projection, to_id), from_id, counters, Budget.unlimited()));
+	}
+
+	// build landmark distance tables of a projection for example.projection.astar
+	@Procedure(value = "example.landmarks.build")
+	@Description("example.landmarks.build: pick k landmarks of projection and compute their distance tables")
+	public Stream<LandmarkInfo> landmarksBuild(@Name("name") final String name, @Name(value = "k", defaultValue = "8") final Long k) {
+		final Projection projection = Projection.get(name);
+		final Landmarks landmarks = Landmarks.build(projection, k.intValue());
+		projection.setLandmarks(landmarks);
+		return Stream.of(new LandmarkInfo(name, projection, landmarks));
+	}
+
+	// bidirectional A* on a projection with landmark lower bounds
+	@Procedure(value = "example.projection.astar")
+	@Description("example.projection.astar: bidirectional A* with landmarks (ALT) on projection")
+	public Stream<Output> projectionAstar(@Name("name") final String name, @Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+		final Projection projection = Projection.get(name);
+		final Landmarks landmarks = projection.landmarks();
+		if (landmarks == null) {
+			throw new IllegalArgumentException("No landmarks for projection " + name + ", call example.landmarks.build first");
+		}
+		final int from = projectionIndex(projection, from_id);
+		final int to = projectionIndex(projection, to_id);
+		// different components: no route
+		if (landmarks.lowerBound(from, to) == Double.POSITIVE_INFINITY) {
+			return Stream.empty();
+		}
+		final Counters counters = new Counters();
+		return finish("example.projection.astar", counters, Collections.emptyMap(), bidirectionalDijkstra(projection, projection, from, to, from_id,
+				landmarks.potential(from, to, true), landmarks.potential(from, to, false), false, counters, Budget.unlimited()));
+	}
+
+	// build contraction hierarchy of a projection for example.ch.query
+	@Procedure(value = "example.ch.build")
+	@Description("example.ch.build: contract nodes of projection and add shortcuts")
+	public Stream<ContractionInfo> chBuild(@Name("name") final String name) {
+		final Projection projection = Projection.get(name);
+		final ContractionHierarchy ch = ContractionHierarchy.build(projection);
+		projection.setContractionHierarchy(ch);
+		return Stream.of(new ContractionInfo(name, ch));
+	}
+
+	// shortest path query on contraction hierarchy
+	@Procedure(value = "example.ch.query")
+	@Description("example.ch.query: shortest path by upward bidirectional search on contraction hierarchy")
+	public Stream<Output> chQuery(@Name("name") final String name, @Name("from_id") final Long from_id, @Name("to_id") final Long to_id) {
+		final Projection projection = Projection.get(name);
+		final ContractionHierarchy ch = projection.contractionHierarchy();
+		if (ch == null) {
+			throw new IllegalArgumentException("No contraction hierarchy for projection " + name + ", call example.ch.build first");
+		}
+		final Counters counters = new Counters();
+		final ContractionHierarchy.Route route = ch.query(projectionIndex(projection, from_id), projectionIndex(projection, to_id), counters);
+		// no route
+		if (route == null) {
+			return finish("example.ch.query", counters, Collections.emptyMap(), Stream.empty());
+		}
 		final Output o = new Output();
+		o.path = getPath(from_id, route.rel_ids);
+		o.cost = route.cost;
+		return finish("example.ch.query", counters, Collections.emptyMap(), Stream.of(o));
+	}
 
-		// property name for category
-		final String category_property = "category";
+	// node index in projection
+	public int projectionIndex(final Projection projection, final long node_id) {
+		final int index = projection.index(node_id);
+		if (index < 0) {
+			throw new IllegalArgumentException("Node " + node_id + " is not in the projection");
+		}
+		return index;
+	}
 
-		// Temporary variable for POI
-		Node poi = null;
+	// result class for projections
+	public class ProjectionInfo {
+		public String name;
+		public long nodes;
+		public long relationships;
 
-		// Path finding
-		while(true) {
-			// if one queue is empty, no route exit
-			if(cur_ni_f == null || cur_ni_t == null) {
-				return new ArrayList<Output>().stream();
+		public ProjectionInfo(final String name, final Projection projection) {
+			this.name = name;
+			this.nodes = projection.nodeCount();
+			this.relationships = projection.relationshipCount();
+		}
+	}
+
+	// result class for landmarks
+	public class LandmarkInfo {
+		public String name;
+		public List<Long> landmarks;
+
+		public LandmarkInfo(final String name, final Projection projection, final Landmarks landmarks) {
+			this.name = name;
+			this.landmarks = new ArrayList<>();
+			for (int l = 0; l < landmarks.count(); l++) {
+				this.landmarks.add(projection.nodeId(landmarks.landmark(l)));
 			}
-		    // exit when cannot find shorter path (triangle inequality)
-			// (total cost) < (current f-side cost) + (current t-side cost)
-	    	if(cur_ni_f.cost + cur_ni_t.cost > total_cost){
-	    		final Path f_path = getPath(from_nd, min_ni_f.nd, parent_f);
-	    		final Path t_path = getPath(to_nd, min_ni_t.nd, parent_t);
-	    		o.path = cat(f_path, reverse(t_path));
-				o.cost = total_cost;
-				o.poi = poi;
-	    		break;
+		}
+	}
+
+	// counters of route cache
+	@Procedure(value = "example.routeCache.stats")
+	@Description("example.routeCache.stats: hits, misses and size of point-to-point route cache")
+	public Stream<RouteCacheInfo> routeCacheStats() {
+		final SampleExtension extension = SampleExtension.of(db);
+		if (extension == null) {
+			return Stream.empty();
+		}
+		return Stream.of(new RouteCacheInfo(extension.routeCache()));
+	}
+
+	// result class for route cache stats (weight: number of ids, see RouteCache)
+	public class RouteCacheInfo {
+		public long hits;
+		public long misses;
+		public double hitRatio;
+		public long size;
+		public long weight;
+		public long capacity;
+		public long evictions;
+		public long invalidations;
+
+		public RouteCacheInfo(final RouteCache cache) {
+			this.hits = cache.hits();
+			this.misses = cache.misses();
+			this.hitRatio = hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+			this.size = cache.size();
+			this.weight = cache.weight();
+			this.capacity = cache.capacity();
+			this.evictions = cache.evictions();
+			this.invalidations = cache.invalidations();
+		}
+	}
+
+	// result of a point-to-point routing procedure through the route cache
+	// (search runs on a miss; complete results, one row or none, are cached,
+	// unless the transaction has changes or config.cache is false)
+	public Stream<Output> cachedRoute(final String procedure, final long start_id, final long to_id, final Object params, final Map<String, Object> config,
+			final Supplier<Stream<Output>> search) {
+		final SampleExtension extension = SampleExtension.ofCommitted(db);
+		if (extension == null || Boolean.FALSE.equals(config.get("cache"))) {
+			return search.get();
+		}
+		final RouteCache cache = extension.routeCache();
+		final String key = RouteCache.key(procedure, start_id, to_id, params, config);
+		final RouteCache.Route route = cache.get(key);
+		if (route != null) {
+			// nothing is searched
+			return finish(procedure, new Counters(), config, route.ids == null ? Stream.empty() : Stream.of(output(start_id, route, ids(config))));
+		}
+		final long version = cache.version();
+		final List<Output> rows = search.get().collect(Collectors.toList());
+		if (rows.isEmpty()) {
+			cache.put(key, RouteCache.NONE, version);
+		} else if (rows.size() == 1 && Budget.OK.equals(rows.get(0).status)) {
+			cache.put(key, route(rows.get(0)), version);
+		}
+		return rows.stream();
+	}
+
+	// cached form of a routing result: relationship ids of path, or node ids
+	public static RouteCache.Route route(final Output o) {
+		final long[] ids;
+		if (o.nodeIds != null) {
+			ids = o.nodeIds.stream().mapToLong(Long::longValue).toArray();
+		} else {
+			ids = StreamSupport.stream(o.path.relationships().spliterator(), false).mapToLong(Relationship::getId).toArray();
+		}
+		return new RouteCache.Route(ids, o.cost, o.depth, o.poi == null ? -1 : o.poi.getId());
+	}
+
+	// routing result from its cached form
+	public Output output(final long start_id, final RouteCache.Route route, final boolean ids) {
+		final Output o = new Output();
+		if (ids) {
+			o.nodeIds = asList(route.ids);
+		} else {
+			o.path = getPath(start_id, route.ids);
+		}
+		o.cost = route.cost;
+		o.depth = route.depth;
+		o.poi = route.poi_id < 0 ? null : db.getNodeById(route.poi_id);
+		o.status = Budget.OK;
+		return o;
+	}
+
+	// build weakly connected components index
+	@Procedure(value = "example.components.build")
+	@Description("example.components.build: index weakly connected components, so routes between components are not searched (config.concurrency)")
+	public Stream<ComponentInfo> componentsBuild(@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final SampleExtension extension = SampleExtension.of(db);
+		if (extension == null) {
+			return Stream.empty();
+		}
+		final Number concurrency = (Number) config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors());
+		final long components = extension.componentIndex().build(db, concurrency.intValue());
+		return Stream.of(new ComponentInfo(components, extension.componentIndex()));
+	}
+
+	// state of weakly connected components index
+	@Procedure(value = "example.components.stats")
+	@Description("example.components.stats: whether the component index is built and current")
+	public Stream<ComponentInfo> componentsStats() {
+		final SampleExtension extension = SampleExtension.of(db);
+		if (extension == null) {
+			return Stream.empty();
+		}
+		return Stream.of(new ComponentInfo(null, extension.componentIndex()));
+	}
+
+	// result class for component index (components is counted only when built)
+	public class ComponentInfo {
+		public Long components;
+		public boolean built;
+		public boolean stale;
+
+		public ComponentInfo(final Long components, final ComponentIndex index) {
+			this.components = components;
+			this.built = index.isBuilt();
+			this.stale = index.isStale();
+		}
+	}
+
+	// true if the component index knows there is no route between the nodes
+	// (only if the transaction has no changes, since the index has committed state)
+	public boolean disconnected(final long from_id, final long to_id) {
+		final SampleExtension extension = SampleExtension.ofCommitted(db);
+		return extension != null && extension.componentIndex().disconnected(from_id, to_id);
+	}
+
+	// result class for contraction hierarchies
+	public class ContractionInfo {
+		public String name;
+		public long shortcuts;
+
+		public ContractionInfo(final String name, final ContractionHierarchy ch) {
+			this.name = name;
+			this.shortcuts = ch.shortcutCount();
+		}
+	}
+
+	// sample9_1: simple trip plannning query
+	// (category is a category or a list of categories, the route goes via a POI of any of them)
+	@Procedure(value = "example.sample9_1")
+	@Description("sample9_1: simple trip plannning query")
+	public Stream<Output> sample9_1(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id, @Name("category") final Object category,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final Node from_nd = db.getNodeById(from_id);
+		final Node to_nd = db.getNodeById(to_id);
+		final List<String> categories = categories(category);
+		return cachedRoute("example.sample9_1", from_nd.getId(), to_nd.getId(), new TreeSet<>(categories), config, () -> {
+			final Counters counters = new Counters();
+			if (disconnected(from_nd.getId(), to_nd.getId())) {
+				return finish("example.sample9_1", counters, config, Stream.empty());
 			}
-			// expand from-side
-			if(pq_f.peek().cost <= pq_t.peek().cost){
-				// top node of queue's cost is fixed
-				cur_ni_f = pq_f.poll();
-				cur_ni_f.done = true;
-				// If POI is found, check total path
-				if(cur_ni_f.nd.getProperty(category_property, "If property is missing, this value will be returned").equals(category)){
-					// find the node in the other side
-					final NodeInfo ni_t = nodes_t.get(cur_ni_f.nd);
-					// the node is in the other side map , it is poi, and total_cost can be lower
-					if(ni_t != null && ni_t.nd.getProperty(category_property, "If property is missing, this value will be returned").equals(category) && total_cost > cur_ni_f.cost + ni_t.cost) {
-						min_ni_f = cur_ni_f;
-						min_ni_t = ni_t;
-						poi = ni_t.nd;
-						total_cost = cur_ni_f.cost + ni_t.cost;					
+			final TraversalSpec spec = TraversalSpec.of(config);
+			// to-side follows relationships backwards
+			try (KernelAdjacency adjacency = KernelAdjacency.of(db, spec, true);
+					KernelAdjacency adjacency_t = spec.undirected() ? null : KernelAdjacency.of(db, spec.reverse(), true)) {
+				// check of POI, and number of POIs not fixed in either side (unknown without index)
+				final LongPredicate is_poi;
+				long unseen;
+				final SampleExtension extension = SampleExtension.ofCommitted(db);
+				if (extension != null) {
+					final LongSet pois = extension.poiIndex().nodes(categories);
+					// no POI, no route
+					if (pois.isEmpty()) {
+						return finish("example.sample9_1", counters, config, Stream.empty());
+					}
+					is_poi = pois::contains;
+					unseen = pois.size();
+				} else {
+					// transaction has its own changes: check property
+					final int category_key = adjacency.propertyKey(PoiIndex.PROPERTY);
+					final Set<Value> category_values = new HashSet<>();
+					for (final String c : categories) {
+						category_values.add(Values.stringValue(c));
 					}
+					is_poi = id -> category_values.contains(adjacency.nodeProperty(id, category_key));
+					unseen = Long.MAX_VALUE;
 				}
-				// get adjacent nodes and add them to queue
-				// Property for cost: type must be double
-				getAdjacentNodes(cur_ni_f, pq_f, nodes_f, parent_f);
+				// search state for from-side and to-side
+				final Dijkstra sp_f = new Dijkstra(adjacency, from_nd.getId(), null, counters);
+				final Dijkstra sp_t = new Dijkstra(adjacency_t == null ? adjacency : adjacency_t, to_nd.getId(), null, counters);
+				// POIs fixed only in one side and their fixed costs
+				final LongDoubleHashMap pending_f = new LongDoubleHashMap();
+				final LongDoubleHashMap pending_t = new LongDoubleHashMap();
+
+				// POI that f-side path and t-side path meets
+				long min_id = -1;
+
+				// variables for checking to exit
+				double total_cost = Double.POSITIVE_INFINITY;
+				final Budget budget = Budget.of(config, guard);
+				String status = Budget.OK;
+				double bound;
+
+				// Path finding
+				while(true) {
+					// if one queue is empty, every node reachable from that side is fixed
+					final double top_f = sp_f.isEmpty() ? Double.POSITIVE_INFINITY : sp_f.peekCost();
+					final double top_t = sp_t.isEmpty() ? Double.POSITIVE_INFINITY : sp_t.peekCost();
+					// lower bound of total cost through a POI which is not fixed in both sides:
+					// not fixed in either side (if any is left), or fixed in one side only
+					final double bound_f = minCost(pending_t) + top_f;
+					final double bound_t = minCost(pending_f) + top_t;
+					bound = Math.min(unseen > 0 ? top_f + top_t : Double.POSITIVE_INFINITY, Math.min(bound_f, bound_t));
+					// exit when cannot find shorter path or no more POI can be found
+					if (bound > total_cost || bound == Double.POSITIVE_INFINITY) {
+						break;
+					}
+					// budget ran out: return the best route found so far, if any
+					final String over = budget.check(counters.nodes_settled, bound);
+					if (over != null) {
+						status = over;
+						break;
+					}
+					// when all POIs are found, only expand the side that can fix the cheapest pending one
+					final boolean forward = unseen > 0 ? top_f <= top_t : bound_f <= bound_t;
+					// expand from-side
+					if (forward) {
+						// top node of queue's cost is fixed
+						final int slot = sp_f.poll();
+						final long id = sp_f.nodeId(slot);
+						// If POI is found, check total path
+						if (is_poi.test(id)) {
+							// find the node in the other side
+							final int o_slot = sp_t.slotOf(id);
+							// the POI is fixed in both sides
+							if (o_slot >= 0 && sp_t.isDone(o_slot)) {
+								pending_t.remove(id);
+								if (total_cost > sp_f.cost(slot) + sp_t.cost(o_slot)) {
+									min_id = id;
+									total_cost = sp_f.cost(slot) + sp_t.cost(o_slot);
+								}
+							} else {
+								pending_f.put(id, sp_f.cost(slot));
+								unseen--;
+							}
+						}
+						// get adjacent nodes and add them to queue
+						sp_f.expand(slot);
+					}
+					// expand to-side
+					else {
+						final int slot = sp_t.poll();
+						final long id = sp_t.nodeId(slot);
+						if (is_poi.test(id)) {
+							final int o_slot = sp_f.slotOf(id);
+							if (o_slot >= 0 && sp_f.isDone(o_slot)) {
+								pending_f.remove(id);
+								if (total_cost > sp_f.cost(o_slot) + sp_t.cost(slot)) {
+									min_id = id;
+									total_cost = sp_f.cost(o_slot) + sp_t.cost(slot);
+								}
+							} else {
+								pending_t.put(id, sp_t.cost(slot));
+								unseen--;
+							}
+						}
+						sp_t.expand(slot);
+					}
+				}
+				// no route
+				if (min_id < 0) {
+					return finish("example.sample9_1", counters, config, Budget.OK.equals(status) ? Stream.empty() : Stream.of(partial(status, bound)));
+				}
+				// Result
+				final Output o = new Output();
+				setRoute(o, from_nd.getId(), sp_f, sp_t, min_id, ids(config));
+				o.cost = total_cost;
+				o.poi = db.getNodeById(min_id);
+				o.status = status;
+				return finish("example.sample9_1", counters, config, Stream.of(o));
 			}
-			// expand to-side
-			else{
-				cur_ni_t = pq_t.poll();
-				cur_ni_t.done = true;
-				// If POI is found, check total path
-				if (cur_ni_t.nd.getProperty(category_property, "If property is missing, this value will be returned").equals(category)) {
-					// find the node in the other side
-					final NodeInfo ni_f = nodes_f.get(cur_ni_t.nd);
-					// the node is in the other side map , it is poi, and total_cost can be lower
-					if (ni_f != null && ni_f.nd.getProperty(category_property, "If property is missing, this value will be returned").equals(category)
-							&& total_cost > cur_ni_t.cost + ni_f.cost) {
-						min_ni_t = cur_ni_t;
-						min_ni_f = ni_f;
-						poi = ni_f.nd;
-						total_cost = cur_ni_t.cost + ni_f.cost;
+		});
+	}
+
+	// sample9_2: trip planning via a POI of each category in order
+	// (each stop is a category or a list of categories)
+	@Procedure(value = "example.sample9_2")
+	@Description("sample9_2: trip planning via a POI of each stop in order, by one Dijkstra on a graph layered by stops visited")
+	public Stream<Output> sample9_2(@Name("from_id") final Long from_id, @Name("to_id") final Long to_id, @Name("categories") final List<Object> categories,
+			@Name(value = "config", defaultValue = "{}") final Map<String, Object> config) {
+		final Node from_nd = db.getNodeById(from_id);
+		final Node to_nd = db.getNodeById(to_id);
+		if (categories.isEmpty()) {
+			throw new IllegalArgumentException("categories must have at least one stop");
+		}
+		final Counters counters = new Counters();
+		if (disconnected(from_nd.getId(), to_nd.getId())) {
+			return finish("example.sample9_2", counters, config, Stream.empty());
+		}
+		try (KernelAdjacency adjacency = KernelAdjacency.of(db, TraversalSpec.of(config), true)) {
+			final SampleExtension extension = SampleExtension.ofCommitted(db);
+			final LongPredicate[] stops = new LongPredicate[categories.size()];
+			for (int l = 0; l < stops.length; l++) {
+				final List<String> stop = categories(categories.get(l));
+				if (extension != null) {
+					final LongSet pois = extension.poiIndex().nodes(stop);
+					// no POI of a stop, no route
+					if (pois.isEmpty()) {
+						return finish("example.sample9_2", counters, config, Stream.empty());
 					}
+					stops[l] = pois::contains;
+				} else {
+					// transaction has its own changes: check property
+					final int category_key = adjacency.propertyKey(PoiIndex.PROPERTY);
+					final Set<Value> category_values = new HashSet<>();
+					for (final String c : stop) {
+						category_values.add(Values.stringValue(c));
+					}
+					stops[l] = id -> category_values.contains(adjacency.nodeProperty(id, category_key));
 				}
-				getAdjacentNodes(cur_ni_t, pq_t, nodes_t, parent_t);
-			}			
+			}
+			final SequencedTrip trip = new SequencedTrip(adjacency, from_nd.getId(), to_nd.getId(), stops, counters);
+			final String status = trip.search(Budget.of(config, guard));
+			// no route
+			if (!trip.found()) {
+				return finish("example.sample9_2", counters, config, Budget.OK.equals(status) ? Stream.empty() : Stream.of(partial(status, trip.bound())));
+			}
+			// Result: the best route found so far if the budget ran out
+			final Output o = new Output();
+			if (ids(config)) {
+				o.nodeIds = asList(trip.nodeIds());
+				o.poiIds = asList(trip.poiIds());
+			} else {
+				o.path = getPath(from_nd.getId(), trip.relationshipIds());
+				o.pois = new ArrayList<>();
+				for (final long poi_id : trip.poiIds()) {
+					o.pois.add(db.getNodeById(poi_id));
+				}
+			}
+			o.cost = trip.cost();
+			o.status = status;
+			return finish("example.sample9_2", counters, config, Stream.of(o));
 		}
-		// list for result
-		final List<Output> o_l = new ArrayList<>();
-		o_l.add(o);
-		return o_l.stream();
 	}
 
-	// reverse Path
-	public Path reverse(final Path p) {
-		PathImpl.Builder builder = new PathImpl.Builder(p.endNode());		
-		for(final Relationship r: p.reverseRelationships()) {
-			builder = builder.push(r);
+	// traversal metrics of all procedures called so far
+	@Procedure(value = "example.stats")
+	@Description("example.stats: nodes settled, relationships expanded and wall time of procedures")
+	public Stream<StatsInfo> stats() {
+		return Metrics.all().stream().map(StatsInfo::new);
+	}
+
+	// result class for stats
+	public class StatsInfo {
+		public String name;
+		public long calls;
+		public long nodesSettled;
+		public long relationshipsExpanded;
+		public long heapPushes;
+		public long decreaseKeys;
+		public long peakFrontier;
+		public double meanMs;
+		public double p50Ms;
+		public double p90Ms;
+		public double p99Ms;
+		public double maxMs;
+
+		public StatsInfo(final Metrics metrics) {
+			this.name = metrics.name();
+			this.calls = metrics.getCalls();
+			this.nodesSettled = metrics.getNodesSettled();
+			this.relationshipsExpanded = metrics.getRelationshipsExpanded();
+			this.heapPushes = metrics.getHeapPushes();
+			this.decreaseKeys = metrics.getDecreaseKeys();
+			this.peakFrontier = metrics.getPeakFrontier();
+			this.meanMs = metrics.getMeanMs();
+			this.p50Ms = metrics.percentileMs(0.5);
+			this.p90Ms = metrics.percentileMs(0.9);
+			this.p99Ms = metrics.percentileMs(0.99);
+			this.maxMs = metrics.getMaxMs();
 		}
-		return builder.build();
 	}
-	// concatenate two Paths 
-	public Path cat(final Path p1, final Path p2) {
-		PathImpl.Builder builder = new PathImpl.Builder(p1.startNode());
-		final Iterable<Relationship> rels1 = p1.relationships();
-		final Iterable<Relationship> rels2 = p2.relationships();
-		for(final Relationship r: rels1) {
-			builder = builder.push(r);
+
+	// run a procedure of this extension in the background
+	@Procedure(value = "example.jobs.submit")
+	@Description("example.jobs.submit: run example.* procedure with list of arguments in the background, returns job id")
+	public Stream<JobInfo> jobsSubmit(@Name("procedure") final String procedure, @Name(value = "params", defaultValue = "[]") final List<Object> params) {
+		return Stream.of(new JobInfo(jobs().submit(procedure, params)));
+	}
+
+	// state of a job, or of all jobs
+	@Procedure(value = "example.jobs.status")
+	@Description("example.jobs.status: state, rows and elapsed time of a job (of all jobs if id is -1)")
+	public Stream<JobInfo> jobsStatus(@Name(value = "id", defaultValue = "-1") final long id) {
+		if (id == -1) {
+			return jobs().all().stream().map(JobInfo::new);
 		}
-		for(final Relationship r: rels2) {
-			builder = builder.push(r);
+		return Stream.of(new JobInfo(jobs().get(id)));
+	}
+
+	// page of rows of a job (found so far if it is running)
+	@Procedure(value = "example.jobs.results")
+	@Description("example.jobs.results: rows offset .. offset + limit - 1 of a job, entities as ids")
+	public Stream<JobRow> jobsResults(@Name("id") final long id, @Name(value = "offset", defaultValue = "0") final long offset,
+			@Name(value = "limit", defaultValue = "1000") final long limit) {
+		final List<Map<String, Object>> rows = jobs().get(id).rows(offset, limit);
+		return IntStream.range(0, rows.size()).mapToObj(i -> new JobRow(offset + i, rows.get(i)));
+	}
+
+	// stop a job, or discard the results of a finished one
+	@Procedure(value = "example.jobs.cancel")
+	@Description("example.jobs.cancel: stop queued or running job, or discard finished job")
+	public Stream<JobInfo> jobsCancel(@Name("id") final long id) {
+		return Stream.of(new JobInfo(jobs().cancel(id)));
+	}
+
+	private Jobs jobs() {
+		final SampleExtension extension = SampleExtension.of(db);
+		if (extension == null) {
+			throw new IllegalStateException("Jobs need the sample extension");
 		}
-		return builder.build();
+		return extension.jobs();
 	}
-	
-	// get adjacent nodes and add them to queue
-	public void getAdjacentNodes(final NodeInfo cur_ni, final PriorityQueue<NodeInfo> pq, final Map<Node, NodeInfo> nodes, final Map<Node, Relationship> parent) {
-		final String cost_property = "cost";
-		final Iterable<Relationship> rels = cur_ni.nd.getRelationships();
-		for (final Relationship rel : rels) {
-			// get adjacent nodes and their costs
-			final Node o_nd = rel.getOtherNode(cur_ni.nd);
-			final double cost_rel = (double) rel.getProperty(cost_property);
-			// check whether the node was found
-			NodeInfo next_ni = nodes.get(o_nd);
-			// not found -> 1st appearance of the node, add it to map
-			if (next_ni == null) {
-				next_ni = new NodeInfo(o_nd, cur_ni.cost + cost_rel);
-				pq.add(next_ni);
-				nodes.put(o_nd, next_ni);
-				parent.put(o_nd, rel);
-			}
-			// found but cost is't fixed and has lower cost -> overwrite cost
-			else if (next_ni.done == false) {
-				if (next_ni.cost > cur_ni.cost + cost_rel) {
-					next_ni.cost = cur_ni.cost + cost_rel;
-					parent.put(o_nd, rel);
-				}
-			}
-			// found and cost was fixed -> do nothing
+
+	// result class for jobs
+	public class JobInfo {
+		public long id;
+		public String procedure;
+		public String status;
+		public long rows;
+		public long bytes;
+		public boolean truncated;
+		public String error;
+		public long elapsedMs;
+
+		public JobInfo(final Jobs.Job job) {
+			this.id = job.id;
+			this.procedure = job.procedure;
+			this.status = job.status();
+			this.rows = job.rowCount();
+			this.bytes = job.bytes();
+			this.truncated = job.truncated();
+			this.error = job.error();
+			this.elapsedMs = job.elapsedMs();
+		}
+	}
+
+	// result class for job results
+	public class JobRow {
+		public long index;
+		public Map<String, Object> row;
+
+		public JobRow(final long index, final Map<String, Object> row) {
+			this.index = index;
+			this.row = row;
+		}
+	}
+
+	// result of a search stopped by its budget: no path, cost is a lower bound
+	public Output partial(final String status, final double bound) {
+		final Output o = new Output();
+		o.cost = bound;
+		o.status = status;
+		return o;
+	}
+
+	// record metrics of a call whose result is already computed,
+	// and add profile column to its rows if config.profile is true
+	public static Stream<Output> finish(final String procedure, final Counters counters, final Map<String, Object> config, final Stream<Output> result) {
+		Metrics.of(procedure).record(counters);
+		if (!profile(config)) {
+			return result;
+		}
+		final Map<String, Object> profile = counters.toMap();
+		return result.peek(o -> o.profile = profile);
+	}
+
+	public static boolean profile(final Map<String, Object> config) {
+		return Boolean.TRUE.equals(config.get("profile"));
+	}
+
+	// true if config.output is 'ids': node ids instead of nodes and paths
+	public static boolean ids(final Map<String, Object> config) {
+		return "ids".equals(config.get("output"));
+	}
+
+	// category parameter: a string or a list of strings
+	@SuppressWarnings("unchecked")
+	public static List<String> categories(final Object category) {
+		if (category instanceof String) {
+			return Arrays.asList((String) category);
+		}
+		if (category instanceof List) {
+			return (List<String>) category;
+		}
+		throw new IllegalArgumentException("category must be a string or a list of strings");
+	}
+
+	// node id parameter: a node id or a list of node ids
+	public static long[] nodeIds(final Object ids) {
+		if (ids instanceof Number) {
+			return new long[] { ((Number) ids).longValue() };
+		}
+		if (ids instanceof List) {
+			return ((List<?>) ids).stream().mapToLong(id -> ((Number) id).longValue()).toArray();
+		}
+		throw new IllegalArgumentException("node ids must be a node id or a list of node ids");
+	}
+
+	// minimum cost in the map, infinity if empty
+	public static double minCost(final LongDoubleHashMap costs) {
+		return costs.isEmpty() ? Double.POSITIVE_INFINITY : costs.min();
+	}
+
+	// construct path from relationship ids
+	public Path getPath(final long frm_id, final long[] rel_ids) {
+		PathImpl.Builder builder = new PathImpl.Builder(db.getNodeById(frm_id));
+		for (final long rel_id : rel_ids) {
+			builder = builder.push(db.getRelationshipById(rel_id));
 		}
+		return builder.build();
 	}
-	
-	// Node and cost to it
-	public class NodeInfo {
-		public Node nd; // Neo4j Node
-		public double cost; // cost summation from start node
-		public boolean done; // flag for cost fixed
 
-		// constructor
-		public NodeInfo(final Node nd, final double cost) {
-			super();
-			this.nd = nd;
-			this.cost = cost;
-			done = false;
+	// route of a bidirectional search meeting at meet_id: path, or node ids if ids
+	public void setRoute(final Output o, final long start_id, final Dijkstra sp_f, final Dijkstra sp_t, final long meet_id, final boolean ids) {
+		if (ids) {
+			final long[] f_ids = sp_f.nodePath(sp_f.slotOf(meet_id));
+			final long[] t_ids = sp_t.nodePath(sp_t.slotOf(meet_id));
+			// meet_id is the last of both
+			o.nodeIds = asList(join(f_ids, Arrays.copyOf(t_ids, t_ids.length - 1)));
+		} else {
+			o.path = getPath(start_id, join(sp_f.path(sp_f.slotOf(meet_id)), sp_t.path(sp_t.slotOf(meet_id))));
 		}
+	}
+
+	// long array as list for procedure output (no copy)
+	public static List<Long> asList(final long[] values) {
+		return new AbstractList<Long>() {
+			@Override
+			public Long get(final int index) {
+				return values[index];
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
 
-		public String toString() {
-			String s = "";
-			final Node nd_i = this.nd;
-			s = s + nd_i.getId();
-			s = s + ":";
-			s = s + this.cost;
-			s = s + ",";
-			return s;
+	// join f-side path and reversed t-side path
+	public static long[] join(final long[] f_rels, final long[] t_rels) {
+		final long[] rels = Arrays.copyOf(f_rels, f_rels.length + t_rels.length);
+		for (int i = 0; i < t_rels.length; i++) {
+			rels[f_rels.length + i] = t_rels[t_rels.length - 1 - i];
 		}
+		return rels;
 	}
 
-	// for debug: visualize fixed nodes
-	public String nodestoString(Map<Node, NodeInfo> nodes) {
+	// for debug: visualize found nodes
+	public String nodestoString(final Dijkstra sp) {
 		String ret = "";
-		for (Map.Entry<Node, NodeInfo> entry : nodes.entrySet()) {
-			Node n = entry.getKey();
-			ret = ret + n.getProperty("no").toString() + " ";
+		for (int slot = 0; slot < sp.size(); slot++) {
+			ret = ret + db.getNodeById(sp.nodeId(slot)).getProperty("no").toString() + " ";
 		}
 		return ret;
 	}
@@ -0,0 +1,170 @@
+package org.ggszk.ext_sample;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * State shared by the procedures of one database, kept current on commit
+ *
+ * Holds the relationship cost cache, the POI index, the component index, the
+ * route cache and the background jobs. A transaction event handler invalidates the costs of relationships
+ * that are deleted or whose cost is set or removed, applies category changes to
+ * the POI index, and created relationships to the component index. Routes are
+ * cleared when relationships, their properties or categories change.
+ */
+public class SampleExtension extends LifecycleAdapter {
+	// setting for the number of cached costs
+	public static final String COST_CACHE_SIZE = "example.cost_cache.size";
+	private static final int DEFAULT_COST_CACHE_SIZE = 1 << 20;
+	// setting for the weight of cached routes (number of ids, see RouteCache)
+	public static final String ROUTE_CACHE_CAPACITY = "example.route_cache.capacity";
+	private static final long DEFAULT_ROUTE_CACHE_CAPACITY = 1 << 22;
+	// settings for the number of running and waiting jobs and the rows (and their bytes) kept by a job
+	public static final String JOBS_CONCURRENCY = "example.jobs.concurrency";
+	private static final int DEFAULT_JOBS_CONCURRENCY = 2;
+	public static final String JOBS_QUEUE_SIZE = "example.jobs.queue_size";
+	private static final int DEFAULT_JOBS_QUEUE_SIZE = 16;
+	public static final String JOBS_MAX_ROWS = "example.jobs.max_rows";
+	private static final int DEFAULT_JOBS_MAX_ROWS = 1_000_000;
+	public static final String JOBS_MAX_BYTES = "example.jobs.max_bytes";
+	private static final int DEFAULT_JOBS_MAX_BYTES = 1 << 26;
+
+	// running extensions by database directory
+	// (procedures get their own facade of the database, so it can't be the key)
+	private static final Map<File, SampleExtension> extensions = new ConcurrentHashMap<>();
+
+	private final GraphDatabaseService db;
+	private final CostCache cost_cache;
+	private final PoiIndex poi_index;
+	private final ComponentIndex component_index = new ComponentIndex();
+	private final RouteCache route_cache;
+	private final Jobs jobs;
+	private final TransactionEventHandler<Object> handler = new TransactionEventHandler.Adapter<Object>() {
+		@Override
+		public void afterCommit(final TransactionData data, final Object state) {
+			onCommit(data);
+		}
+	};
+
+	public SampleExtension(final GraphDatabaseService db, final Config config) {
+		this.db = db;
+		this.cost_cache = new CostCache(config.getRaw(COST_CACHE_SIZE).map(Integer::parseInt).orElse(DEFAULT_COST_CACHE_SIZE));
+		this.poi_index = new PoiIndex(db);
+		this.route_cache = new RouteCache(config.getRaw(ROUTE_CACHE_CAPACITY).map(Long::parseLong).orElse(DEFAULT_ROUTE_CACHE_CAPACITY));
+		this.jobs = new Jobs(db, config.getRaw(JOBS_CONCURRENCY).map(Integer::parseInt).orElse(DEFAULT_JOBS_CONCURRENCY),
+				config.getRaw(JOBS_QUEUE_SIZE).map(Integer::parseInt).orElse(DEFAULT_JOBS_QUEUE_SIZE),
+				config.getRaw(JOBS_MAX_ROWS).map(Integer::parseInt).orElse(DEFAULT_JOBS_MAX_ROWS),
+				config.getRaw(JOBS_MAX_BYTES).map(Integer::parseInt).orElse(DEFAULT_JOBS_MAX_BYTES));
+	}
+
+	// extension of database, null if it isn't running
+	public static SampleExtension of(final GraphDatabaseService db) {
+		return extensions.get(directory(db));
+	}
+
+	// extension of database if the transaction bound to current thread has no changes,
+	// so that committed state kept by the extension is also what the transaction sees
+	public static SampleExtension ofCommitted(final GraphDatabaseService db) {
+		final SampleExtension extension = of(db);
+		if (extension == null || ((TxStateHolder) KernelAdjacency.kernelTransaction(db)).hasTxStateWithChanges()) {
+			return null;
+		}
+		return extension;
+	}
+
+	@Override
+	public void start() {
+		db.registerTransactionEventHandler(handler);
+		extensions.put(directory(db), this);
+	}
+
+	@Override
+	public void stop() {
+		extensions.remove(directory(db));
+		db.unregisterTransactionEventHandler(handler);
+		jobs.shutdown();
+	}
+
+	private static File directory(final GraphDatabaseService db) {
+		return ((GraphDatabaseAPI) db).databaseLayout().databaseDirectory();
+	}
+
+	public CostCache costCache() {
+		return cost_cache;
+	}
+
+	public PoiIndex poiIndex() {
+		return poi_index;
+	}
+
+	public ComponentIndex componentIndex() {
+		return component_index;
+	}
+
+	public RouteCache routeCache() {
+		return route_cache;
+	}
+
+	public Jobs jobs() {
+		return jobs;
+	}
+
+	private void onCommit(final TransactionData data) {
+		poi_index.onCommit(data);
+		component_index.onCommit(data);
+		final LongArrayList rel_ids = new LongArrayList();
+		for (final Relationship rel : data.deletedRelationships()) {
+			rel_ids.add(rel.getId());
+		}
+		for (final PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+			if (CostCache.PROPERTY.equals(entry.key())) {
+				rel_ids.add(entry.entity().getId());
+			}
+		}
+		for (final PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+			if (CostCache.PROPERTY.equals(entry.key())) {
+				rel_ids.add(entry.entity().getId());
+			}
+		}
+		if (!rel_ids.isEmpty()) {
+			cost_cache.beginInvalidation();
+			rel_ids.forEach(cost_cache::invalidate);
+		}
+		if (changesRoutes(data)) {
+			route_cache.clear();
+		}
+	}
+
+	// true if a route may have changed: relationships or their properties
+	// (any of them may be a weight), or POI categories
+	private static boolean changesRoutes(final TransactionData data) {
+		if (data.createdRelationships().iterator().hasNext() || data.deletedRelationships().iterator().hasNext()
+				|| data.assignedRelationshipProperties().iterator().hasNext() || data.removedRelationshipProperties().iterator().hasNext()) {
+			return true;
+		}
+		for (final PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+			if (PoiIndex.PROPERTY.equals(entry.key())) {
+				return true;
+			}
+		}
+		for (final PropertyEntry<Node> entry : data.removedNodeProperties()) {
+			if (PoiIndex.PROPERTY.equals(entry.key())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
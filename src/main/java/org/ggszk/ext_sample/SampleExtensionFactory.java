@@ -0,0 +1,30 @@
+package org.ggszk.ext_sample;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.spi.KernelContext;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+
+/**
+ * Kernel extension factory of SampleExtension
+ *
+ * Registered in META-INF/services, so Neo4j loads it with the plugin.
+ */
+public class SampleExtensionFactory extends KernelExtensionFactory<SampleExtensionFactory.Dependencies> {
+	public interface Dependencies {
+		GraphDatabaseService graphDatabaseService();
+
+		Config config();
+	}
+
+	public SampleExtensionFactory() {
+		super(ExtensionType.DATABASE, "ggszk-sample");
+	}
+
+	@Override
+	public Lifecycle newInstance(final KernelContext context, final Dependencies dependencies) {
+		return new SampleExtension(dependencies.graphDatabaseService(), dependencies.config());
+	}
+}
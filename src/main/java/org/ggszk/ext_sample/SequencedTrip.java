@@ -0,0 +1,186 @@
+package org.ggszk.ext_sample;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+/**
+ * Cheapest route visiting one POI of each stop in order, by one Dijkstra
+ *
+ * The search runs on a layered graph: a state is a node and the number of stops
+ * visited so far (its layer). Relationships connect states of the same layer,
+ * and at a POI of the next stop the state moves to the next layer at no cost.
+ * The route ends at the target in the last layer. Each layer keeps its own
+ * slots, so a node may be settled once per layer. Once the target state is
+ * reached, its cost bounds the search: states that are not cheaper are not
+ * pushed, and the search stops when the cheapest state in the heap is not.
+ * A POI may serve consecutive stops if it matches both.
+ */
+public class SequencedTrip implements Adjacency.Visitor {
+	private final Adjacency adjacency;
+	// layer -> check of POI of the stop
+	private final LongPredicate[] stops;
+	private final long to_id;
+	// work counters of the procedure call
+	private final Counters counters;
+	// layer -> node id -> slot
+	private final LongIntHashMap[] slots;
+	// slot -> node id, layer, cost from start node, parent relationship id
+	// (-1 for start node and a visit of POI), parent slot (-1 for start node)
+	private long[] node_ids = new long[64];
+	private int[] layers = new int[64];
+	private double[] costs = new double[64];
+	private long[] parents = new long[64];
+	private int[] parent_slots = new int[64];
+	private boolean[] done = new boolean[64];
+	private int size = 0;
+	private final IndexedHeap heap = new IndexedHeap(64);
+	// slot of the state being expanded
+	private int cur_slot = -1;
+	// cost and slot of the best complete route found so far
+	private double best = Double.POSITIVE_INFINITY;
+	private int best_slot = -1;
+	// lower bound of the cost of the best route when the search stopped
+	private double bound = Double.POSITIVE_INFINITY;
+
+	public SequencedTrip(final Adjacency adjacency, final long from_id, final long to_id, final LongPredicate[] stops, final Counters counters) {
+		this.adjacency = adjacency;
+		this.stops = stops;
+		this.to_id = to_id;
+		this.counters = counters;
+		this.slots = new LongIntHashMap[stops.length + 1];
+		for (int l = 0; l < slots.length; l++) {
+			slots[l] = new LongIntHashMap();
+		}
+		relax(from_id, 0, 0.0, -1, -1);
+	}
+
+	// search until the best route is settled or the budget runs out; returns the status
+	public String search(final Budget budget) {
+		// the best route is settled when no state left is cheaper
+		while (!heap.isEmpty() && heap.peekKey() < best) {
+			final double top = heap.peekKey();
+			final String over = budget.check(counters.nodes_settled, top);
+			if (over != null) {
+				bound = top;
+				return over;
+			}
+			final int slot = heap.poll();
+			done[slot] = true;
+			counters.nodes_settled++;
+			final long id = node_ids[slot];
+			final int layer = layers[slot];
+			// visit POI of the next stop (or pass it by on this layer)
+			if (layer < stops.length && stops[layer].test(id)) {
+				relax(id, layer + 1, costs[slot], -1, slot);
+			}
+			cur_slot = slot;
+			adjacency.expand(id, this);
+		}
+		bound = best;
+		return Budget.OK;
+	}
+
+	// relax an adjacent node of the state being expanded, on its layer
+	@Override
+	public void visit(final long rel_id, final long o_id, final double cost_rel) {
+		counters.relationships_expanded++;
+		relax(o_id, layers[cur_slot], costs[cur_slot] + cost_rel, rel_id, cur_slot);
+	}
+
+	private void relax(final long node_id, final int layer, final double cost, final long rel_id, final int parent_slot) {
+		// pruned: not cheaper than the best route
+		if (cost >= best) {
+			return;
+		}
+		int slot = slots[layer].getIfAbsent(node_id, -1);
+		if (slot < 0) {
+			slot = newSlot(node_id, layer, cost, rel_id, parent_slot);
+			heap.add(slot, cost);
+			counters.heap_pushes++;
+			counters.frontier(heap.size());
+		} else if (!done[slot] && heap.decreaseKey(slot, cost)) {
+			costs[slot] = cost;
+			parents[slot] = rel_id;
+			parent_slots[slot] = parent_slot;
+			counters.decrease_keys++;
+		} else {
+			return;
+		}
+		if (layer == stops.length && node_id == to_id) {
+			best = cost;
+			best_slot = slot;
+		}
+	}
+
+	private int newSlot(final long node_id, final int layer, final double cost, final long rel_id, final int parent_slot) {
+		if (size == node_ids.length) {
+			final int n = size * 2;
+			node_ids = Arrays.copyOf(node_ids, n);
+			layers = Arrays.copyOf(layers, n);
+			costs = Arrays.copyOf(costs, n);
+			parents = Arrays.copyOf(parents, n);
+			parent_slots = Arrays.copyOf(parent_slots, n);
+			done = Arrays.copyOf(done, n);
+		}
+		final int slot = size++;
+		node_ids[slot] = node_id;
+		layers[slot] = layer;
+		costs[slot] = cost;
+		parents[slot] = rel_id;
+		parent_slots[slot] = parent_slot;
+		slots[layer].put(node_id, slot);
+		return slot;
+	}
+
+	// true if a complete route was found (the best one unless the budget ran out)
+	public boolean found() {
+		return best_slot >= 0;
+	}
+
+	public double cost() {
+		return best;
+	}
+
+	// lower bound of the cost of the best route (its cost if it was settled)
+	public double bound() {
+		return bound;
+	}
+
+	// relationship ids of the route
+	public long[] relationshipIds() {
+		final LongArrayList rel_ids = new LongArrayList();
+		for (int s = best_slot; parent_slots[s] >= 0; s = parent_slots[s]) {
+			if (parents[s] >= 0) {
+				rel_ids.add(parents[s]);
+			}
+		}
+		return rel_ids.reverseThis().toArray();
+	}
+
+	// node ids of the route, start and target included
+	public long[] nodeIds() {
+		final LongArrayList ids = new LongArrayList();
+		int s = best_slot;
+		for (; parent_slots[s] >= 0; s = parent_slots[s]) {
+			if (parents[s] >= 0) {
+				ids.add(node_ids[s]);
+			}
+		}
+		ids.add(node_ids[s]);
+		return ids.reverseThis().toArray();
+	}
+
+	// POI node ids of the route, in order of stops
+	public long[] poiIds() {
+		final LongArrayList ids = new LongArrayList();
+		for (int s = best_slot; parent_slots[s] >= 0; s = parent_slots[s]) {
+			if (parents[s] < 0) {
+				ids.add(node_ids[s]);
+			}
+		}
+		return ids.reverseThis().toArray();
+	}
+}
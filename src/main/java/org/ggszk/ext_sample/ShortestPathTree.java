@@ -0,0 +1,102 @@
+package org.ggszk.ext_sample;
+
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+
+/**
+ * Shortest path tree from one or more nodes, as a stream of node ids
+ *
+ * Each node is given with its cost and parent node id (see cost() and
+ * parentId()). The sequential engine settles nodes with djkstra one at a
+ * time when the stream asks for the next one, and can start from several
+ * nodes and stop at a cost cutoff; DeltaStepping is the parallel engine.
+ * When the budget runs out, the node returned last gets the budget status.
+ */
+public abstract class ShortestPathTree extends Spliterators.AbstractLongSpliterator {
+
+	protected ShortestPathTree() {
+		super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL | IMMUTABLE);
+	}
+
+	// cost of the node given to the last action
+	public abstract double cost();
+
+	// parent node id of the node given to the last action, NO_PARENT for the start node
+	public abstract long parentId();
+
+	// status of the node given to the last action
+	public abstract String status();
+
+	// start node id the node given to the last action is reached from
+	public abstract long source();
+
+	// sequential engine: lazy djkstra on adjacency
+	public static ShortestPathTree dijkstra(final Adjacency adjacency, final long start_id, final Counters counters, final Budget budget) {
+		return dijkstra(adjacency, new long[] { start_id }, Double.POSITIVE_INFINITY, counters, budget);
+	}
+
+	// sequential engine from several start nodes, nodes costing more than cutoff are not settled
+	public static ShortestPathTree dijkstra(final Adjacency adjacency, final long[] start_ids, final double cutoff, final Counters counters,
+			final Budget budget) {
+		return new Sequential(new Dijkstra(adjacency, start_ids, null, counters), cutoff, counters, budget);
+	}
+
+	private static class Sequential extends ShortestPathTree {
+		private final Dijkstra sp;
+		private final double cutoff;
+		private final Counters counters;
+		private final Budget budget;
+		// slot of the current node
+		private int slot = -1;
+		private String status = Budget.OK;
+		private boolean stopped = false;
+
+		Sequential(final Dijkstra sp, final double cutoff, final Counters counters, final Budget budget) {
+			this.sp = sp;
+			this.cutoff = cutoff;
+			this.counters = counters;
+			this.budget = budget;
+		}
+
+		@Override
+		public boolean tryAdvance(final LongConsumer action) {
+			// end when every node within cutoff is settled
+			if (stopped || sp.isEmpty() || sp.peekCost() > cutoff) {
+				return false;
+			}
+			// top node of queue's cost is fixed
+			slot = sp.poll();
+			sp.expand(slot);
+			// this is the last node if budget ran out and nodes are left
+			if (!sp.isEmpty() && sp.peekCost() <= cutoff) {
+				final String over = budget.check(counters.nodes_settled, sp.peekCost());
+				if (over != null) {
+					status = over;
+					stopped = true;
+				}
+			}
+			action.accept(sp.nodeId(slot));
+			return true;
+		}
+
+		@Override
+		public double cost() {
+			return sp.cost(slot);
+		}
+
+		@Override
+		public long parentId() {
+			return sp.parentId(slot);
+		}
+
+		@Override
+		public String status() {
+			return status;
+		}
+
+		@Override
+		public long source() {
+			return sp.source(slot);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Which relationships a traversal follows and how they are weighted
+ *
+ * From the config map of a procedure:
+ * - relationships: "TYPE" or "<TYPE>" (both directions), "TYPE>" (outgoing)
+ *   or "<TYPE" (incoming), joined with '|'. A direction without type (">" or "<") is any
+ *   type. Not given: every relationship in both directions.
+ * - weightProperty: property for cost (default "cost")
+ * - defaultWeight: cost of relationships without the property (default: error)
+ */
+public class TraversalSpec {
+	// relationship type and direction of a traversal
+	public static class Entry {
+		// null for any type
+		public final String type;
+		public final Direction direction;
+
+		public Entry(final String type, final Direction direction) {
+			this.type = type;
+			this.direction = direction;
+		}
+	}
+
+	// all relationships in both directions, weighted by cost
+	public static final TraversalSpec DEFAULT = new TraversalSpec(Collections.emptyList(), Dijkstra.COST_PROPERTY, Double.NaN);
+
+	// empty for all relationships
+	public final List<Entry> relationships;
+	public final String weight_property;
+	// NaN if missing property is an error
+	public final double default_weight;
+
+	public TraversalSpec(final List<Entry> relationships, final String weight_property, final double default_weight) {
+		this.relationships = relationships;
+		this.weight_property = weight_property;
+		this.default_weight = default_weight;
+	}
+
+	public static TraversalSpec of(final Map<String, Object> config) {
+		final String weight_property = (String) config.getOrDefault("weightProperty", Dijkstra.COST_PROPERTY);
+		final Number default_weight = (Number) config.get("defaultWeight");
+		return new TraversalSpec(parse((String) config.get("relationships")), weight_property,
+				default_weight == null ? Double.NaN : default_weight.doubleValue());
+	}
+
+	// parse "TYPE>|<TYPE|TYPE"
+	public static List<Entry> parse(final String relationships) {
+		final List<Entry> entries = new ArrayList<>();
+		if (relationships == null || relationships.trim().isEmpty()) {
+			return entries;
+		}
+		for (String token : relationships.split("\\|")) {
+			token = token.trim();
+			final boolean incoming = token.startsWith("<");
+			final boolean outgoing = token.endsWith(">");
+			token = token.substring(incoming ? 1 : 0, Math.max(incoming ? 1 : 0, token.length() - (outgoing ? 1 : 0)));
+			final Direction direction = incoming == outgoing ? Direction.BOTH : incoming ? Direction.INCOMING : Direction.OUTGOING;
+			entries.add(new Entry(token.isEmpty() ? null : token, direction));
+		}
+		return entries;
+	}
+
+	// true if every relationship is followed in both directions
+	public boolean allRelationships() {
+		return relationships.isEmpty();
+	}
+
+	// true if every entry is followed in both directions, so the spec is its own reverse
+	public boolean undirected() {
+		for (final Entry entry : relationships) {
+			if (entry.direction != Direction.BOTH) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// spec with reversed directions, for the to-side of bidirectional searches
+	public TraversalSpec reverse() {
+		final List<Entry> reversed = new ArrayList<>();
+		for (final Entry entry : relationships) {
+			reversed.add(new Entry(entry.type, entry.direction.reverse()));
+		}
+		return new TraversalSpec(reversed, weight_property, default_weight);
+	}
+}
@@ -0,0 +1,89 @@
+package org.ggszk.ext_sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import org.neo4j.graphdb.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Shared worker pool for parallel procedures
+ *
+ * Work run on the pool has no transaction; each task opens its own read
+ * transaction, so changes not yet committed by the caller are not visible.
+ */
+public class Workers {
+	// bounded by number of cores
+	public static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private Workers() {
+	}
+
+	// wait for all tasks and return their results in order
+	// (if one fails, the others are cancelled and its exception is thrown)
+	public static <T> List<T> join(final List<Future<T>> futures) {
+		final List<T> results = new ArrayList<>(futures.size());
+		try {
+			for (final Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (final InterruptedException e) {
+			futures.forEach(f -> f.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for workers", e);
+		} catch (final ExecutionException e) {
+			futures.forEach(f -> f.cancel(true));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	// results of task(0) .. task(chunks - 1) in chunk order, run on at most
+	// concurrency threads of the pool that take the chunks in turn
+	public static <T> List<T> chunks(final int chunks, final int concurrency, final IntFunction<T> task) {
+		final AtomicReferenceArray<T> results = new AtomicReferenceArray<>(chunks);
+		final AtomicInteger next = new AtomicInteger();
+		final List<Future<Object>> futures = new ArrayList<>();
+		for (int w = 0; w < Math.max(1, Math.min(concurrency, chunks)); w++) {
+			futures.add(pool.submit(() -> {
+				int c;
+				while ((c = next.getAndIncrement()) < chunks) {
+					results.set(c, task.apply(c));
+				}
+				return null;
+			}));
+		}
+		join(futures);
+		final List<T> list = new ArrayList<>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			list.add(results.get(c));
+		}
+		return list;
+	}
+
+	// node ids are below this value
+	public static long nodeHighId(final GraphDatabaseService db) {
+		return highId(db, IdType.NODE);
+	}
+
+	// relationship ids are below this value
+	public static long relationshipHighId(final GraphDatabaseService db) {
+		return highId(db, IdType.RELATIONSHIP);
+	}
+
+	private static long highId(final GraphDatabaseService db, final IdType type) {
+		return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(IdGeneratorFactory.class, DependencyResolver.SelectionStrategy.ONLY).get(type).getHighId();
+	}
+}
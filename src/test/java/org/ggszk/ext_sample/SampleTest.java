@@ -46,11 +46,15 @@ public class SampleTest
             long nodeId = session.run( "CREATE (p:Player {l_name:'Leister', f_name:'Karl'}) RETURN id(p)" )
                     .single()
                     .get( 0 ).asLong();
-        	session.run( "CREATE (p:Orchestra {name:'Berlin Philharmonic'})" );
-        	session.run( "match (a:Player), (b:Orchestra) create (a)-[r:BELONG_TO]->(b)");
+            long toId = session.run( "CREATE (p:Orchestra {name:'Berlin Philharmonic'}) RETURN id(p)" )
+                    .single()
+                    .get( 0 ).asLong();
+            long relId = session.run( "match (a:Player), (b:Orchestra) create (a)-[r:BELONG_TO]->(b) RETURN id(r)" )
+                    .single()
+                    .get( 0 ).asLong();
         	Path p = session.run( "CALL example.sample4_2(" + nodeId + ") yield path as path" ).single().get(0).asPath();
-        	// CAUTION!: Node id might change depending to circumstances  
-        	assertThat( p.toString(), equalTo("path[(0)-[0:BELONG_TO]->(20)]"));
+        	// CAUTION!: Node id might change depending to circumstances, so ids are taken from the created entities
+        	assertThat( p.toString(), equalTo("path[(" + nodeId + ")-[" + relId + ":BELONG_TO]->(" + toId + ")]"));
         }    	
     }
     @Test
@@ -78,6 +82,543 @@ public class SampleTest
         }    	
     }
     @Test
+    public void sample6_1limittest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+            long nodeId = session.run( "CREATE (p:S3 {no:0, visited:false}) RETURN id(p)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	session.run( "match (n {no:0}) CREATE (n) -[r:CONNECT_TO]->(n1:S3 {no:1, visited:false})");
+        	session.run( "match (n {no:0}) CREATE (n) -[r:CONNECT_TO]->(n1:S3 {no:2, visited:false})");
+        	session.run( "match (n {no:1}) CREATE (n) -[r:CONNECT_TO]->(n1:S3 {no:3, visited:false})");
+        	// traversal stops when LIMIT is reached
+        	StatementResult r = session.run( "CALL example.sample6_1(" + nodeId + ") yield node return node.no limit 2" );
+        	List<Integer> nos = new ArrayList<Integer>();
+        	while(r.hasNext()) {
+        		nos.add(r.next().get(0).asInt());
+        	}
+        	assertThat( nos.toString(), equalTo("[0, 2]"));
+        	// nodes settled are bounded by the limit, not by the 900 nodes of the component
+        	// (metrics are kept per JVM, so compare with the numbers before the call)
+        	createGrid(session, 30);
+        	String stats = "CALL example.stats() yield name, calls, nodesSettled WHERE name = 'example.sample6_1' RETURN calls, nodesSettled";
+        	Record before = session.run( stats ).single();
+        	List<Record> rows = session.run( "MATCH (s:Grid {no:0}) CALL example.sample6_1(id(s)) yield node return node.no limit 5" ).list();
+        	assertThat( rows.size(), equalTo(5));
+        	Record after = session.run( stats ).single();
+        	assertThat( after.get(0).asLong(), equalTo(before.get(0).asLong() + 1));
+        	long settled = after.get(1).asLong() - before.get(1).asLong();
+        	assertThat( "settled " + settled, settled >= 5 && settled <= 20, equalTo(true));
+        }    	
+    }
+    @Test
+    public void budgettest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	long nodeId = session.run( "match (n:S3 {no:0}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	// nodes at maxDepth are not expanded
+        	List<Record> rows = session.run( "CALL example.sample6_1(" + nodeId + ", {maxDepth:1}) yield node, status return node.no, status" ).list();
+        	assertThat( rows.toString(), equalTo("[Record<{node.no: 0, status: \"OK\"}>, Record<{node.no: 9, status: \"MAX_DEPTH\"}>, "
+        			+ "Record<{node.no: 2, status: \"MAX_DEPTH\"}>, Record<{node.no: 1, status: \"MAX_DEPTH\"}>]"));
+        	// the last node tells that the traversal was stopped
+        	rows = session.run( "CALL example.sample6_2(" + nodeId + ", {maxNodes:2}) yield node, status return node.no, status" ).list();
+        	assertThat( rows.size(), equalTo(2));
+        	assertThat( rows.get(1).get(1).asString(), equalTo("MAX_NODES"));
+        	// routing returns a partial result: no path, and a lower bound of cost
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.%s(id(f), id(t), $config) yield path, cost, status return path, cost, status";
+        	Record rec = session.run( String.format(query, "sample8_1"), Values.parameters("config", Values.parameters("maxCost", 5)) ).single();
+        	assertThat( rec.get(0).isNull(), equalTo(true));
+        	assertThat( rec.get(1).asDouble() > 5.0, equalTo(true));
+        	assertThat( rec.get(2).asString(), equalTo("MAX_COST"));
+        	rec = session.run( String.format(query, "sample8_2"), Values.parameters("config", Values.parameters("timeoutMs", 0)) ).single();
+        	assertThat( rec.get(2).asString(), equalTo("TIMEOUT"));
+        	// a timeout beyond the range of nanoseconds is no limit, a negative one is an error
+        	rec = session.run( String.format(query, "sample8_2"), Values.parameters("config", Values.parameters("timeoutMs", Long.MAX_VALUE / 1000)) ).single();
+        	assertThat( rec.get(2).asString(), equalTo("OK"));
+        	try {
+        		session.run( String.format(query, "sample8_2"), Values.parameters("config", Values.parameters("timeoutMs", -1)) ).consume();
+        		assertThat( "accepted", equalTo("rejected"));
+        	} catch (org.neo4j.driver.v1.exceptions.ClientException e) {
+        		assertThat( e.getMessage().contains("timeoutMs must not be negative"), equalTo(true));
+        	}
+        	// enough budget: complete result
+        	rec = session.run( String.format(query, "sample8_2"), Values.parameters("config", Values.parameters("maxNodes", 100, "maxCost", 100)) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(12.0));
+        	assertThat( rec.get(2).asString(), equalTo("OK"));
+        }
+    }
+    @Test
+    public void relationshipstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	// relationship without cost
+        	session.run( "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CREATE (f)-[:SHORTCUT]->(t)" );
+        	String query = "MATCH (f:S3 {no:%d}), (t:S3 {no:%d}) CALL example.%s(id(f), id(t), $config) yield path, cost return [n in nodes(path) | n.no], cost";
+        	// directed: 0-9-8 goes against 8->9
+        	Record rec = session.run( String.format(query, 0, 8, "sample8_2"), Values.parameters("config", Values.parameters("relationships", "CONNECT_TO>")) ).single();
+        	assertThat( rec.get(0).asList().toString(), equalTo("[0, 1, 3, 5, 8]"));
+        	assertThat( rec.get(1).asDouble(), equalTo(12.0));
+        	assertThat( session.run( String.format(query, 8, 0, "sample8_2"), Values.parameters("config", Values.parameters("relationships", "CONNECT_TO>")) ).list().size(), equalTo(0));
+        	rec = session.run( String.format(query, 8, 0, "sample8_2"), Values.parameters("config", Values.parameters("relationships", "<CONNECT_TO")) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(12.0));
+        	// relationships without weight property get the default weight
+        	rec = session.run( String.format(query, 0, 8, "sample8_1"), Values.parameters("config", Values.parameters("relationships", "CONNECT_TO|SHORTCUT", "defaultWeight", 1.0)) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(1.0));
+        	rec = session.run( String.format(query, 0, 8, "sample8_1"), Values.parameters("config", Values.parameters("relationships", "CONNECT_TO")) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(12.0));
+        	// 1 hop paths by type and direction
+        	String adjacent = "MATCH (n:S3 {no:9}) CALL example.sample4_2(id(n), $config) yield path return path";
+        	assertThat( session.run( adjacent, Values.parameters("config", Values.parameters("relationships", "<CONNECT_TO")) ).list().size(), equalTo(2));
+        	assertThat( session.run( adjacent, Values.parameters("config", Values.parameters("relationships", ">")) ).list().size(), equalTo(0));
+        	// overlapping entries: each relationship once (a loop is both outgoing and incoming)
+        	session.run( "MATCH (n:S3 {no:9}) CREATE (n)-[:CONNECT_TO {cost:1.0}]->(n)" );
+        	int both = session.run( "MATCH (n:S3 {no:9})-[r:CONNECT_TO]-() return count(DISTINCT r)" ).single().get(0).asInt();
+        	int all = session.run( "MATCH (n:S3 {no:9})-[r]-() return count(DISTINCT r)" ).single().get(0).asInt();
+        	String adjacent_ids = "MATCH (n:S3 {no:9}) CALL example.sample4_2(id(n), $config) yield path return id(last(relationships(path))) as id";
+        	for (String relationships : new String[] { "CONNECT_TO|CONNECT_TO>", "CONNECT_TO>|<CONNECT_TO", "<CONNECT_TO|CONNECT_TO|CONNECT_TO>" }) {
+        		List<Record> paths = session.run( adjacent_ids, Values.parameters("config", Values.parameters("relationships", relationships)) ).list();
+        		assertThat( relationships, paths.size(), equalTo(both));
+        		assertThat( relationships, paths.stream().map(r -> r.get("id").asLong()).distinct().count(), equalTo((long) both));
+        	}
+        	for (String relationships : new String[] { ">|CONNECT_TO", "<|CONNECT_TO>", "<|CONNECT_TO" }) {
+        		List<Record> paths = session.run( adjacent_ids, Values.parameters("config", Values.parameters("relationships", relationships)) ).list();
+        		assertThat( relationships, paths.stream().map(r -> r.get("id").asLong()).distinct().count(), equalTo((long) paths.size()));
+        	}
+        	assertThat( session.run( adjacent, Values.parameters("config", Values.parameters("relationships", "<|>|CONNECT_TO")) ).list().size(), equalTo(all));
+        	session.run( "MATCH (n:S3 {no:9})-[r:CONNECT_TO]->(n) DELETE r" );
+        	// dense node: only the SHORTCUT group is read
+        	session.run( "MATCH (n:S3 {no:0}) UNWIND range(1, 100) AS i CREATE (n)-[:LEAF]->(:Leaf)" );
+        	List<Record> rows = session.run( "MATCH (n:S3 {no:0}) CALL example.sample6_1(id(n), {relationships:'SHORTCUT>', maxDepth:1}) yield node return node.no" ).list();
+        	assertThat( rows.toString(), equalTo("[Record<{node.no: 0}>, Record<{node.no: 8}>]"));
+        	rows = session.run( "MATCH (n:S3 {no:0}) CALL example.sample6_1(id(n), {relationships:'LEAF|<SHORTCUT', maxDepth:1}) yield node return node" ).list();
+        	assertThat( rows.size(), equalTo(101));
+        }
+    }
+    @Test
+    public void idstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	// traversal: node id and parent node id instead of node and path
+        	List<Record> rows = session.run( "MATCH (s:S3 {no:0}) CALL example.sample6_1(id(s), {output:'ids', maxDepth:1}) yield node, path, nodeId, parentId, depth "
+        			+ "MATCH (n) WHERE id(n) = nodeId OPTIONAL MATCH (p) WHERE id(p) = parentId RETURN node, path, n.no, p.no, depth" ).list();
+        	assertThat( rows.size(), equalTo(4));
+        	assertThat( rows.get(0).get(0).isNull() && rows.get(0).get(1).isNull(), equalTo(true));
+        	assertThat( rows.get(0).get(3).isNull(), equalTo(true));
+        	for (Record rec : rows.subList(1, 4)) {
+        		assertThat( rec.get(3).asInt(), equalTo(0));
+        		assertThat( rec.get(4).asInt(), equalTo(1));
+        	}
+        	// same parents in parallel mode
+        	List<Record> par = session.run( "MATCH (s:S3 {no:0}) CALL example.sample6_1(id(s), {output:'ids', parallel:true}) yield nodeId, parentId return nodeId, parentId" ).list();
+        	List<Record> seq = session.run( "MATCH (s:S3 {no:0}) CALL example.sample6_1(id(s), {output:'ids'}) yield nodeId, parentId return nodeId, parentId" ).list();
+        	assertThat( par.toString(), equalTo(seq.toString()));
+        	// routing: node ids of the route
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.%s yield path, nodeIds, cost "
+        			+ "MATCH (n:S3) WITH path, nodeIds, cost, collect(n) AS ns "
+        			+ "RETURN path, [i in nodeIds | [n in ns WHERE id(n) = i][0].no], cost";
+        	for (String call : new String[] { "sample8_1(id(f), id(t), {output:'ids'})", "sample8_2(id(f), id(t), {output:'ids'})",
+        			"sample9_1(id(f), id(t), 'ramen', {output:'ids'})" }) {
+        		Record rec = session.run( String.format(query, call) ).single();
+        		assertThat( rec.get(0).isNull(), equalTo(true));
+        		assertThat( rec.get(1).asList().toString(), equalTo("[0, 1, 3, 5, 8]"));
+        		assertThat( rec.get(2).asDouble(), equalTo(12.0));
+        	}
+        }
+    }
+    @Test
+    public void sssptest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 8);
+        	long nodeId = session.run( "match (n:Grid {no:27}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	String query = "CALL example.sssp(" + nodeId + ", $config) yield nodeId, cost, parentId, status return nodeId, cost, parentId, status";
+        	List<Record> seq = session.run( query, Values.parameters("config", Values.parameters("engine", "dijkstra")) ).list();
+        	List<Record> par = session.run( query, Values.parameters("config", Values.parameters("engine", "deltaStepping", "delta", 3.0, "concurrency", 4)) ).list();
+        	assertThat( seq.size(), equalTo(64));
+        	assertThat( par.size(), equalTo(64));
+        	// one worker gives the same tree (buffers are merged in chunk order)
+        	List<Record> one = session.run( query, Values.parameters("config", Values.parameters("engine", "deltaStepping", "delta", 3.0, "concurrency", 1)) ).list();
+        	assertThat( one.toString(), equalTo(par.toString()));
+        	// both engines give nodes in order of cost, with the same costs
+        	java.util.Map<Long, Double> costs = new java.util.HashMap<Long, Double>();
+        	double last = 0.0;
+        	for (Record rec : seq) {
+        		assertThat( rec.get(1).asDouble() >= last, equalTo(true));
+        		last = rec.get(1).asDouble();
+        		costs.put(rec.get(0).asLong(), last);
+        	}
+        	last = 0.0;
+        	for (Record rec : par) {
+        		assertThat( rec.get(1).asDouble() >= last, equalTo(true));
+        		last = rec.get(1).asDouble();
+        		assertThat( rec.get(1).asDouble(), equalTo(costs.get(rec.get(0).asLong())));
+        		// cost of a node is cost of its parent plus the relationship
+        		if (!rec.get(2).isNull()) {
+        			double rel = session.run( "MATCH (p)-[r]-(n) WHERE id(p) = $p AND id(n) = $n RETURN min(r.cost)",
+        					Values.parameters("p", rec.get(2).asLong(), "n", rec.get(0).asLong()) ).single().get(0).asDouble();
+        			assertThat( costs.get(rec.get(2).asLong()) + rel, equalTo(rec.get(1).asDouble()));
+        		}
+        	}
+        	assertThat( seq.get(0).get(2).isNull(), equalTo(true));
+        	// same cost as djkstra to one node
+        	long toId = session.run( "match (n:Grid {no:63}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	double cost = session.run( "CALL example.sample8_1(" + nodeId + ", " + toId + ") yield cost return cost" ).single().get(0).asDouble();
+        	assertThat( costs.get(toId), equalTo(cost));
+        	// budget: nodes up to maxCost
+        	for (String engine : new String[] { "dijkstra", "deltaStepping" }) {
+        		List<Record> rows = session.run( query, Values.parameters("config", Values.parameters("engine", engine, "maxCost", 10.0)) ).list();
+        		long within = costs.values().stream().filter(c -> c <= 10.0).count();
+        		assertThat( (long) rows.size(), equalTo(within));
+        		assertThat( rows.get(rows.size() - 1).get(3).asString(), equalTo("MAX_COST"));
+        	}
+        }
+    }
+    @Test
+    public void isochronetest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	// every node within cost 5 of no:0 or no:8, with the closer one
+        	List<Record> rows = session.run( "MATCH (a:S3 {no:0}), (b:S3 {no:8}) CALL example.isochrone([id(a), id(b)], 5.0) yield nodeId, sourceId, cost, status "
+        			+ "MATCH (n), (s) WHERE id(n) = nodeId AND id(s) = sourceId RETURN n.no, s.no, cost, status" ).list();
+        	// settled in order of cost (order of nodes with the same cost is not defined)
+        	assertThat( rows.stream().map(rec -> rec.get(2).asDouble()).collect(java.util.stream.Collectors.toList()).toString(),
+        			equalTo("[0.0, 0.0, 2.0, 3.0, 4.0, 4.0, 5.0]"));
+        	rows.sort((a, b) -> a.get(0).asInt() - b.get(0).asInt());
+        	assertThat( rows.toString(), equalTo("[Record<{n.no: 0, s.no: 0, cost: 0.0, status: \"OK\"}>, Record<{n.no: 1, s.no: 0, cost: 3.0, status: \"OK\"}>, "
+        			+ "Record<{n.no: 2, s.no: 0, cost: 4.0, status: \"OK\"}>, Record<{n.no: 3, s.no: 8, cost: 4.0, status: \"OK\"}>, "
+        			+ "Record<{n.no: 5, s.no: 8, cost: 2.0, status: \"OK\"}>, Record<{n.no: 6, s.no: 8, cost: 5.0, status: \"OK\"}>, "
+        			+ "Record<{n.no: 8, s.no: 8, cost: 0.0, status: \"OK\"}>]"));
+        	// one start node
+        	assertThat( session.run( "MATCH (a:S3 {no:0}) CALL example.isochrone(id(a), 4.0) yield nodeId return nodeId" ).list().size(), equalTo(3));
+        }
+    }
+    @Test
+    public void kShortestPathstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.kShortestPaths(id(f), id(t), 3, $config) yield path, cost "
+        			+ "RETURN [n in nodes(path) | n.no], cost";
+        	// only two loopless routes
+        	List<Record> rows = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).list();
+        	assertThat( rows.toString(), equalTo("[Record<{[n in nodes(path) | n.no]: [0, 1, 3, 5, 8], cost: 12.0}>, "
+        			+ "Record<{[n in nodes(path) | n.no]: [0, 9, 8], cost: 13.0}>]"));
+        	// 0-9-8 goes against 8->9
+        	rows = session.run( query, Values.parameters("config", Values.parameters("relationships", "CONNECT_TO>")) ).list();
+        	assertThat( rows.size(), equalTo(1));
+        	// grid: distinct loopless paths in order of cost, the path cost is the cost
+        	createGrid(session, 5);
+        	long fromId = session.run( "match (n:Grid {no:0}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	long toId = session.run( "match (n:Grid {no:24}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	rows = session.run( "CALL example.kShortestPaths(" + fromId + ", " + toId + ", 10) yield path, cost "
+        			+ "RETURN [r in relationships(path) | id(r)], reduce(c = 0.0, r in relationships(path) | c + r.cost), cost, "
+        			+ "size(nodes(path)) = size(reduce(s = [], n in nodes(path) | CASE WHEN n IN s THEN s ELSE s + n END))" ).list();
+        	assertThat( rows.size(), equalTo(10));
+        	double cost = session.run( "CALL example.sample8_1(" + fromId + ", " + toId + ") yield cost return cost" ).single().get(0).asDouble();
+        	assertThat( rows.get(0).get(2).asDouble(), equalTo(cost));
+        	java.util.Set<String> paths = new java.util.HashSet<String>();
+        	double last = 0.0;
+        	for (Record rec : rows) {
+        		assertThat( rec.get(1).asDouble(), equalTo(rec.get(2).asDouble()));
+        		assertThat( rec.get(2).asDouble() >= last, equalTo(true));
+        		assertThat( rec.get(3).asBoolean(), equalTo(true));
+        		last = rec.get(2).asDouble();
+        		paths.add(rec.get(0).toString());
+        	}
+        	assertThat( paths.size(), equalTo(10));
+        }
+    }
+    @Test
+    public void kShortestPathsbudgettest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 5);
+        	String query = "MATCH (f:Grid {no:0}), (t:Grid {no:24}) CALL example.kShortestPaths(id(f), id(t), 10, $config) yield cost, status RETURN cost, status";
+        	List<Record> all = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).list();
+        	assertThat( all.size(), equalTo(10));
+        	// a search stopped by maxNodes: routes so far, then a row whose cost is a lower bound of the next route
+        	for (long maxNodes = 30; maxNodes <= 300; maxNodes += 30) {
+        		List<Record> rows = session.run( query, Values.parameters("config", Values.parameters("maxNodes", maxNodes)) ).list();
+        		for (int i = 0; i < rows.size(); i++) {
+        			Record rec = rows.get(i);
+        			if (rec.get(1).asString().equals("OK")) {
+        				assertThat( rec.get(0).asDouble(), equalTo(all.get(i).get(0).asDouble()));
+        			} else {
+        				assertThat( rec.get(1).asString(), equalTo("MAX_NODES"));
+        				assertThat( i, equalTo(rows.size() - 1));
+        				assertThat( rec.get(0).asDouble() <= all.get(i).get(0).asDouble(), equalTo(true));
+        			}
+        		}
+        	}
+        	// maxCost below the shortest route: the route is complete, so its cost is reported
+        	double maxCost = all.get(0).get(0).asDouble() - 0.5;
+        	List<Record> rows = session.run( query, Values.parameters("config", Values.parameters("maxCost", maxCost)) ).list();
+        	assertThat( rows.size(), equalTo(1));
+        	assertThat( rows.get(0).get(1).asString(), equalTo("MAX_COST"));
+        	assertThat( rows.get(0).get(0).asDouble(), equalTo(all.get(0).get(0).asDouble()));
+        }
+    }
+    @Test
+    public void shortestHopstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	String query = "MATCH (f:S3 {no:%d}), (t:S3 {no:%d}) CALL example.shortestHops(id(f), id(t), $config) yield path, depth, status "
+        			+ "RETURN [n in nodes(path) | n.no], depth, status";
+        	// 0-9-8 has less hops than 0-1-3-5-8
+        	Record rec = session.run( String.format(query, 0, 8), Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).single();
+        	assertThat( rec.get(0).asList().toString(), equalTo("[0, 9, 8]"));
+        	assertThat( rec.get(1).asInt(), equalTo(2));
+        	rec = session.run( String.format(query, 7, 6), Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).single();
+        	assertThat( rec.get(0).asList().toString(), equalTo("[7, 2, 0, 1, 3, 6]"));
+        	assertThat( rec.get(1).asInt(), equalTo(5));
+        	// directed: 8->9 can't be followed from 0
+        	rec = session.run( String.format(query, 0, 8), Values.parameters("config", Values.parameters("relationships", "CONNECT_TO>")) ).single();
+        	assertThat( rec.get(1).asInt(), equalTo(4));
+        	// not within 4 hops
+        	rec = session.run( String.format(query, 7, 6), Values.parameters("config", Values.parameters("maxDepth", 4)) ).single();
+        	assertThat( rec.get(0).isNull(), equalTo(true));
+        	assertThat( rec.get(2).asString(), equalTo("MAX_DEPTH"));
+        	// same hops as BFS on a grid
+        	createGrid(session, 6);
+        	long fromId = session.run( "match (n:Grid {no:2}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	for (int no = 0; no < 36; no += 5) {
+        		long toId = session.run( "match (n:Grid {no:" + no + "}) RETURN id(n)" ).single().get( 0 ).asLong();
+        		long depth = session.run( "CALL example.sample6_1(" + fromId + ") yield node, depth WHERE id(node) = " + toId + " RETURN depth" ).single().get(0).asLong();
+        		Record hops = session.run( "CALL example.shortestHops(" + fromId + ", " + toId + ") yield path, depth RETURN length(path), depth" ).single();
+        		assertThat( hops.get(0).asLong(), equalTo(depth));
+        		assertThat( hops.get(1).asLong(), equalTo(depth));
+        	}
+        }
+    }
+    @Test
+    public void multiSourceBfstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	// 81 start nodes: two batches
+        	createGrid(session, 9);
+        	String query = "MATCH (n:Grid) WITH collect(id(n)) AS ids CALL example.multiSourceBfs(ids + ids[0], $config) yield sourceId, nodeId, depth, status "
+        			+ "MATCH (s), (n) WHERE id(s) = sourceId AND id(n) = nodeId RETURN s.no, n.no, depth, status";
+        	List<Record> rows = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).list();
+        	assertThat( rows.size(), equalTo(81 * 81));
+        	java.util.Set<String> found = new java.util.HashSet<String>();
+        	for (Record rec : rows) {
+        		int s = rec.get(0).asInt();
+        		int n = rec.get(1).asInt();
+        		// BFS depth on a grid is the manhattan distance
+        		assertThat( rec.get(2).asInt(), equalTo(Math.abs(s / 9 - n / 9) + Math.abs(s % 9 - n % 9)));
+        		assertThat( rec.get(3).asString(), equalTo("OK"));
+        		found.add(s + "-" + n);
+        	}
+        	assertThat( found.size(), equalTo(81 * 81));
+        	// nodes at maxDepth are not expanded
+        	query = "MATCH (n:Grid) WHERE n.no IN [0, 80] WITH collect(id(n)) AS ids CALL example.multiSourceBfs(ids, {maxDepth:1}) yield sourceId, nodeId, depth, status "
+        			+ "MATCH (n) WHERE id(n) = nodeId RETURN n.no, depth, status ORDER BY n.no";
+        	rows = session.run( query ).list();
+        	assertThat( rows.toString(), equalTo("[Record<{n.no: 0, depth: 0, status: \"OK\"}>, Record<{n.no: 1, depth: 1, status: \"MAX_DEPTH\"}>, "
+        			+ "Record<{n.no: 9, depth: 1, status: \"MAX_DEPTH\"}>, Record<{n.no: 71, depth: 1, status: \"MAX_DEPTH\"}>, "
+        			+ "Record<{n.no: 79, depth: 1, status: \"MAX_DEPTH\"}>, Record<{n.no: 80, depth: 0, status: \"OK\"}>]"));
+        }
+    }
+    @Test
+    public void jobstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 9);
+        	long startId = session.run( "MATCH (n:Grid {no:0}) RETURN id(n)" ).single().get(0).asLong();
+        	long jobId = session.run( "CALL example.jobs.submit('example.sample6_1', [$id, {maxDepth:4}]) yield id, status RETURN id",
+        			Values.parameters("id", startId) ).single().get(0).asLong();
+        	Record rec = session.run( "CALL example.jobs.status($id) yield status, rows RETURN status, rows", Values.parameters("id", jobId) ).single();
+        	for (int i = 0; i < 100 && !rec.get(0).asString().equals("DONE"); i++) {
+        		Thread.sleep(50);
+        		rec = session.run( "CALL example.jobs.status($id) yield status, rows RETURN status, rows", Values.parameters("id", jobId) ).single();
+        	}
+        	assertThat( rec.get(0).asString(), equalTo("DONE"));
+        	// nodes within 4 steps of a corner
+        	assertThat( rec.get(1).asLong(), equalTo(15L));
+        	// pages of rows, nodes as ids
+        	String page = "CALL example.jobs.results($id, $offset, 10) yield index, row RETURN index, row.node, row.depth, row.path.nodeIds, row.cost";
+        	List<Record> first = session.run( page, Values.parameters("id", jobId, "offset", 0) ).list();
+        	List<Record> second = session.run( page, Values.parameters("id", jobId, "offset", 10) ).list();
+        	assertThat( first.size(), equalTo(10));
+        	assertThat( second.size(), equalTo(5));
+        	assertThat( first.get(0).get(1).asLong(), equalTo(startId));
+        	assertThat( second.get(4).get(0).asLong(), equalTo(14L));
+        	assertThat( second.get(4).get(2).asLong(), equalTo(4L));
+        	// paths as node ids, numbers as they were
+        	assertThat( second.get(4).get(3).size(), equalTo(5));
+        	assertThat( second.get(4).get(3).get(0).asLong(), equalTo(startId));
+        	assertThat( second.get(4).get(4).asDouble(), equalTo(0.0));
+        	assertThat( session.run( "CALL example.jobs.status($id) yield bytes RETURN bytes", Values.parameters("id", jobId) ).single().get(0).asLong() > 0, equalTo(true));
+        	// a finished job is discarded by cancel
+        	session.run( "CALL example.jobs.cancel($id)", Values.parameters("id", jobId) ).consume();
+        	assertThat( session.run( "CALL example.jobs.status() yield id RETURN count(id)" ).single().get(0).asLong(), equalTo(0L));
+        	// only procedures of this extension
+        	try {
+        		session.run( "CALL example.jobs.submit('db.labels')" ).consume();
+        		assertThat( "submitted", equalTo("rejected"));
+        	} catch (org.neo4j.driver.v1.exceptions.ClientException e) {
+        		assertThat( e.getMessage().contains("Only procedures example.*"), equalTo(true));
+        	}
+        }
+    }
+    @Test
+    public void routeCachetest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample8_2(id(f), id(t), $config) yield path, cost RETURN [n in nodes(path) | n.no], cost";
+        	String stats = "CALL example.routeCache.stats() yield hits, misses, hitRatio, size RETURN hits, misses, hitRatio, size";
+        	Record first = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).single();
+        	assertThat( first.get(1).asDouble(), equalTo(12.0));
+        	// same route from cache
+        	Record second = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).single();
+        	assertThat( second.toString(), equalTo(first.toString()));
+        	Record rec = session.run( stats ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(1L));
+        	assertThat( rec.get(1).asLong(), equalTo(1L));
+        	assertThat( rec.get(2).asDouble(), equalTo(0.5));
+        	// other config, other entry; profile doesn't change the key
+        	session.run( query, Values.parameters("config", Values.parameters("output", "ids")) ).list();
+        	session.run( query, Values.parameters("config", Values.parameters("profile", true)) ).list();
+        	rec = session.run( stats ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(2L));
+        	assertThat( rec.get(3).asLong(), equalTo(2L));
+        	// POI of cached route, and no route is cached too
+        	String trip = "MATCH (f:S3 {no:7}), (t:S3 {no:6}) CALL example.sample9_1(id(f), id(t), 'ramen') yield poi, cost RETURN poi.no, cost";
+        	assertThat( session.run( trip ).single().toString(), equalTo(session.run( trip ).single().toString()));
+        	session.run( "CREATE (:Island {no:0})" );
+        	String none = "MATCH (f:S3 {no:0}), (t:Island {no:0}) CALL example.shortestHops(id(f), id(t)) yield path RETURN path";
+        	assertThat( session.run( none ).list().size(), equalTo(0));
+        	assertThat( session.run( none ).list().size(), equalTo(0));
+        	rec = session.run( stats ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(4L));
+        	// changed cost clears the cache
+        	session.run( "MATCH (:S3 {no:0})-[r]-(:S3 {no:9}) SET r.cost = 1.0" );
+        	rec = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(8.0));
+        	rec = session.run( "CALL example.routeCache.stats() yield size, invalidations RETURN size, invalidations" ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(1L));
+        	assertThat( rec.get(1).asLong(), equalTo(4L));
+        }
+    }
+    @Test
+    public void componentstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	session.run( "CREATE (:Island {no:0})-[:CONNECT_TO {cost:1.0}]->(:Island {no:1}), (:Island {no:2})" );
+        	Record rec = session.run( "CALL example.components.stats() yield built RETURN built" ).single();
+        	assertThat( rec.get(0).asBoolean(), equalTo(false));
+        	rec = session.run( "CALL example.components.build({concurrency:2}) yield components, built, stale RETURN components, built, stale" ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(3L));
+        	assertThat( rec.get(1).asBoolean(), equalTo(true));
+        	assertThat( rec.get(2).asBoolean(), equalTo(false));
+        	// different components: no route, without search (metrics are shared by all tests; the route cache would hide it)
+        	String query = "MATCH (f:S3 {no:0}), (t:Island {no:%d}) CALL example.sample8_1(id(f), id(t), {cache:false}) yield path, cost RETURN cost";
+        	String settled = "CALL example.stats() yield name, nodesSettled WHERE name = 'example.sample8_1' RETURN nodesSettled";
+        	assertThat( session.run( String.format(query, 0) ).list().size(), equalTo(0));
+        	long before = session.run( settled ).single().get(0).asLong();
+        	assertThat( session.run( String.format(query, 0) ).list().size(), equalTo(0));
+        	assertThat( session.run( settled ).single().get(0).asLong(), equalTo(before));
+        	assertThat( session.run( "MATCH (f:S3 {no:0}), (t:Island {no:0}) CALL example.shortestHops(id(f), id(t)) yield path RETURN path" ).list().size(), equalTo(0));
+        	rec = session.run( "MATCH (f:S3 {no:0}), (t) WHERE t.no = 2 WITH f, collect(id(t)) AS ts CALL example.costMatrix([id(f)], ts) yield cost RETURN collect(cost)" ).single();
+        	assertThat( rec.get(0).asList().toString(), equalTo("[4.0]"));
+        	// created relationships join components on commit
+        	session.run( "MATCH (a:S3 {no:9}), (b:Island {no:1}) CREATE (a)-[:CONNECT_TO {cost:2.0}]->(b)" );
+        	rec = session.run( String.format(query, 0) ).single();
+        	assertThat( rec.get(0).asDouble(), equalTo(9.0));
+        	assertThat( session.run( String.format(query, 2) ).list().size(), equalTo(0));
+        	// deleted relationships make the index stale, and routes are searched
+        	session.run( "MATCH (:S3 {no:8})-[r]-(:S3 {no:9}) DELETE r" );
+        	rec = session.run( "CALL example.components.stats() yield built, stale RETURN built, stale" ).single();
+        	assertThat( rec.get(0).asBoolean(), equalTo(true));
+        	assertThat( rec.get(1).asBoolean(), equalTo(true));
+        	assertThat( session.run( String.format(query, 2) ).list().size(), equalTo(0));
+        	assertThat( session.run( settled ).single().get(0).asLong() > before, equalTo(true));
+        	rec = session.run( "CALL example.components.build() yield components, stale RETURN components, stale" ).single();
+        	assertThat( rec.get(0).asLong(), equalTo(2L));
+        	assertThat( rec.get(1).asBoolean(), equalTo(false));
+        }
+    }
+    @Test
+    public void sample6_1paralleltest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 8);
+        	long nodeId = session.run( "match (n:Grid {no:27}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	// parallel BFS must give the same nodes, depths and paths as sequential BFS
+        	String query = "CALL example.sample6_1(" + nodeId + ", $config) yield node, depth, path return node.no, depth, [n in nodes(path) | n.no]";
+        	List<Record> seq = session.run( query, Values.parameters("config", Values.value(new java.util.HashMap<String, Object>())) ).list();
+        	java.util.Map<String, Object> config = new java.util.HashMap<String, Object>();
+        	config.put("parallel", true);
+        	config.put("concurrency", 4);
+        	List<Record> par = session.run( query, Values.parameters("config", config) ).list();
+        	assertThat( par.size(), equalTo(64));
+        	assertThat( par.toString(), equalTo(seq.toString()));
+        }    	
+    }
+    @Test
     public void sample6_2test() throws Throwable
     {
         // In a try-block, to make sure we close the driver and session after the test
@@ -130,6 +671,30 @@ public class SampleTest
         }    	
     }
     @Test
+    public void sample8_1decreasekeytest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	// cost of no:1 and no:4 are lowered after they are queued
+        	session.run( "CREATE (n0:S3 {no:0}), (n1:S3 {no:1}), (n2:S3 {no:2}), (n3:S3 {no:3}), (n4:S3 {no:4}), (n5:S3 {no:5})"
+        			+ " CREATE (n0)-[:CONNECT_TO {cost:9.0}]->(n1), (n0)-[:CONNECT_TO {cost:1.0}]->(n2), (n0)-[:CONNECT_TO {cost:4.0}]->(n3)"
+        			+ " CREATE (n2)-[:CONNECT_TO {cost:1.0}]->(n1), (n3)-[:CONNECT_TO {cost:1.0}]->(n4), (n1)-[:CONNECT_TO {cost:1.0}]->(n4)"
+        			+ " CREATE (n4)-[:CONNECT_TO {cost:1.0}]->(n5), (n3)-[:CONNECT_TO {cost:3.0}]->(n5)" );
+        	long fromId = session.run( "match (n {no:0}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	long toId = session.run( "match (n {no:5}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	Record rec = session.run( "CALL example.sample8_1(" + fromId + ", " + toId + ") yield path, cost return path, cost" ).single();
+        	assertThat( PathtoString(rec.get(0).asPath()), equalTo("0 2 1 4 5 "));
+        	assertThat( rec.get(1).asDouble(), equalTo(4.0));
+        }    	
+    }
+    @Test
     public void sample8_2test() throws Throwable
     {
         // In a try-block, to make sure we close the driver and session after the test
@@ -182,6 +747,280 @@ public class SampleTest
         	}
         	assertThat(costs.get(0), equalTo(12.0));
         }    	
+    }
+    @Test
+    public void sample9_1categoriestest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample9_1(id(f), id(t), $category) yield cost, poi return cost, poi.no";
+        	// no POI of category
+        	assertThat( session.run( query, Values.parameters("category", "cafe") ).list().size(), equalTo(0));
+        	// POI index is updated on commit
+        	session.run( "MATCH (n:S3 {no:5}) SET n.category = 'cafe'" );
+        	Record rec = session.run( query, Values.parameters("category", Values.value(new String[] { "cafe", "museum" })) ).single();
+        	assertThat( rec.get(0).asDouble(), equalTo(12.0));
+        	assertThat( rec.get(1).asInt(), equalTo(5));
+        	// one POI of any category
+        	rec = session.run( query, Values.parameters("category", Values.value(new String[] { "ramen", "cafe" })) ).single();
+        	assertThat( rec.get(0).asDouble(), equalTo(12.0));
+        	session.run( "MATCH (n:S3 {no:5}) REMOVE n.category" );
+        	assertThat( session.run( query, Values.parameters("category", "cafe") ).list().size(), equalTo(0));
+        }
+    }
+    @Test
+    public void sample9_2test() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	session.run( "MATCH (n:S3 {no:7}) SET n.category = 'cafe'" );
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample9_2(id(f), id(t), $categories) yield path, cost, pois "
+        			+ "RETURN [n in nodes(path) | n.no], cost, [p in pois | p.no]";
+        	// one stop: same as sample9_1
+        	Record rec = session.run( query, Values.parameters("categories", Values.value(new String[] { "ramen" })) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(12.0));
+        	assertThat( rec.get(2).toString(), equalTo("[3]"));
+        	// stops in order: the cafe first, then back to a ramen shop
+        	rec = session.run( query, Values.parameters("categories", Values.value(new String[] { "cafe", "ramen" })) ).single();
+        	assertThat( rec.get(0).toString(), equalTo("[0, 2, 7, 2, 0, 1, 3, 5, 8]"));
+        	assertThat( rec.get(1).asDouble(), equalTo(26.0));
+        	assertThat( rec.get(2).toString(), equalTo("[7, 3]"));
+        	rec = session.run( query, Values.parameters("categories", Values.value(new String[] { "ramen", "cafe" })) ).single();
+        	assertThat( rec.get(1).asDouble(), equalTo(38.0));
+        	assertThat( rec.get(2).toString(), equalTo("[9, 7]"));
+        	// a stop of categories, and ids output
+        	String ids = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample9_2(id(f), id(t), [['museum', 'cafe'], 'ramen'], {output:'ids'}) yield nodeIds, poiIds "
+        			+ "RETURN nodeIds, poiIds";
+        	rec = session.run( ids ).single();
+        	java.util.Map<Long, Integer> no = new java.util.HashMap<Long, Integer>();
+        	for (Record n : session.run( "MATCH (n:S3) RETURN id(n), n.no" ).list()) {
+        		no.put(n.get(0).asLong(), n.get(1).asInt());
+        	}
+        	List<Integer> nodes = new ArrayList<Integer>();
+        	for (Object id : rec.get(0).asList()) {
+        		nodes.add(no.get(id));
+        	}
+        	assertThat( nodes.toString(), equalTo("[0, 2, 7, 2, 0, 1, 3, 5, 8]"));
+        	assertThat( no.get(rec.get(1).get(0).asLong()) + "," + no.get(rec.get(1).get(1).asLong()), equalTo("7,3"));
+        	// no POI of a stop, no route
+        	assertThat( session.run( query, Values.parameters("categories", Values.value(new String[] { "cafe", "museum" })) ).list().size(), equalTo(0));
+        }
+    }
+    @Test
+    public void statstest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	// metrics are kept per JVM, so compare with the numbers before the call
+        	String stats = "CALL example.stats() yield name, calls, nodesSettled WHERE name = 'example.sample8_2' RETURN calls, nodesSettled";
+        	List<Record> before = session.run( stats ).list();
+        	long calls = before.isEmpty() ? 0 : before.get(0).get(0).asLong();
+        	long settled = before.isEmpty() ? 0 : before.get(0).get(1).asLong();
+        	Record rec = session.run( "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample8_2(id(f), id(t), {profile:true}) yield cost, profile return cost, profile" ).single();
+        	assertThat( rec.get(0).asDouble(), equalTo(12.0));
+        	long profiled = rec.get(1).get("nodesSettled").asLong();
+        	assertThat( profiled > 0, equalTo(true));
+        	assertThat( rec.get(1).get("relationshipsExpanded").asLong() >= profiled, equalTo(true));
+        	Record after = session.run( stats ).single();
+        	assertThat( after.get(0).asLong(), equalTo(calls + 1));
+        	assertThat( after.get(1).asLong(), equalTo(settled + profiled));
+        	// no profile column unless asked
+        	assertThat( session.run( "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample8_2(id(f), id(t)) yield profile return profile" ).single().get(0).isNull(), equalTo(true));
+        }
+    }
+    @Test
+    public void costMatrixtest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	StatementResult r = session.run( "MATCH (f:S3) WHERE f.no IN [0, 4] WITH collect(id(f)) AS froms "
+        			+ "MATCH (t:S3) WHERE t.no IN [8, 9] WITH froms, collect(id(t)) AS tos "
+        			+ "CALL example.costMatrix(froms, tos, true) yield from, to, cost, path "
+        			+ "RETURN from, to, cost, length(path) ORDER BY cost" );
+        	List<Double> costs = new ArrayList<Double>();
+        	while(r.hasNext()) {
+        		costs.add(r.next().get(2).asDouble());
+        	}
+        	// 0->9: 6, 0->8: 12, 4->9: 16, 4->8: 22
+        	assertThat( costs.toString(), equalTo("[6.0, 12.0, 16.0, 22.0]"));
+        }    	
+    }
+    @Test
+    public void costCachetest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	// (route cache is bypassed, so that the search runs again)
+        	String query = "MATCH (f:S3 {no:0}), (t:S3 {no:8}) CALL example.sample8_1(id(f), id(t), {cache:false}) yield cost return cost";
+        	assertThat( session.run( query ).single().get(0).asDouble(), equalTo(12.0));
+        	Record first = session.run( "CALL example.costCache.stats()" ).single();
+        	assertThat( first.get("misses").asLong() > 0, equalTo(true));
+        	// second query reads all costs from cache
+        	assertThat( session.run( query ).single().get(0).asDouble(), equalTo(12.0));
+        	Record second = session.run( "CALL example.costCache.stats()" ).single();
+        	assertThat( second.get("misses").asLong(), equalTo(first.get("misses").asLong()));
+        	assertThat( second.get("hits").asLong() > first.get("hits").asLong(), equalTo(true));
+        	// updated cost is not read from cache
+        	session.run( "MATCH (:S3 {no:0})-[r]-(:S3 {no:9}) SET r.cost = 1.0" );
+        	assertThat( session.run( query ).single().get(0).asDouble(), equalTo(8.0));
+        	Record third = session.run( "CALL example.costCache.stats()" ).single();
+        	assertThat( third.get("invalidations").asLong(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void projectiontest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	long fromId = session.run( "match (n {no:0}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	long toId = session.run( "match (n {no:8}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	Record info = session.run( "CALL example.projection.load('p', 'S3', 'CONNECT_TO', 'cost') yield nodes, relationships return nodes, relationships" ).single();
+        	assertThat( info.get(0).asLong(), equalTo(10L));
+        	assertThat( info.get(1).asLong(), equalTo(10L));
+        	Record r1 = session.run( "CALL example.projection.sample8_1('p', " + fromId + ", " + toId + ") yield path, cost return path, cost" ).single();
+        	assertThat( PathtoString(r1.get(0).asPath()), equalTo("0 1 3 5 8 "));
+        	assertThat( r1.get(1).asDouble(), equalTo(12.0));
+        	Record r2 = session.run( "CALL example.projection.sample8_2('p', " + fromId + ", " + toId + ") yield path, cost return path, cost" ).single();
+        	assertThat( PathtoString(r2.get(0).asPath()), equalTo("0 1 3 5 8 "));
+        	assertThat( r2.get(1).asDouble(), equalTo(12.0));
+        	session.run( "CALL example.projection.drop('p')" ).consume();
+        }    	
+    }
+    @Test
+    public void projectionSnapshottest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	long fromId = session.run( "match (n {no:0}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	long toId = session.run( "match (n {no:8}) RETURN id(n)" ).single().get( 0 ).asLong();
+        	String query = "CALL example.projection.sample8_2('snap', " + fromId + ", " + toId + ") yield path, cost return path, cost";
+        	session.run( "CALL example.projection.load('snap', 'S3', 'CONNECT_TO', 'cost')" ).consume();
+        	Record saved = session.run( "CALL example.projection.save('snap') yield nodes, relationships, lastTxId return nodes, relationships, lastTxId" ).single();
+        	session.run( "CALL example.projection.drop('snap')" ).consume();
+        	// mapped snapshot gives the same routes
+        	Record opened = session.run( "CALL example.projection.open('snap') yield nodes, relationships, lastTxId, rebuilt return nodes, relationships, lastTxId, rebuilt" ).single();
+        	assertThat( opened.get(0).asLong(), equalTo(10L));
+        	assertThat( opened.get(1).asLong(), equalTo(10L));
+        	assertThat( opened.get(2).asLong(), equalTo(saved.get(2).asLong()));
+        	assertThat( opened.get(3).asBoolean(), equalTo(false));
+        	Record r = session.run( query ).single();
+        	assertThat( PathtoString(r.get(0).asPath()), equalTo("0 1 3 5 8 "));
+        	assertThat( r.get(1).asDouble(), equalTo(12.0));
+        	// a commit makes the snapshot stale: it is loaded again
+        	session.run( "MATCH (:S3 {no:0})-[r]-(:S3 {no:9}) SET r.cost = 1.0" );
+        	opened = session.run( "CALL example.projection.open('snap') yield lastTxId, rebuilt return lastTxId, rebuilt" ).single();
+        	assertThat( opened.get(0).asLong() > saved.get(2).asLong(), equalTo(true));
+        	assertThat( opened.get(1).asBoolean(), equalTo(true));
+        	r = session.run( query ).single();
+        	assertThat( PathtoString(r.get(0).asPath()), equalTo("0 9 8 "));
+        	assertThat( r.get(1).asDouble(), equalTo(8.0));
+        	assertThat( session.run( "CALL example.projection.open('snap') yield rebuilt return rebuilt" ).single().get(0).asBoolean(), equalTo(false));
+        	session.run( "CALL example.projection.drop('snap')" ).consume();
+        }
+    }
+    @Test
+    public void projectionAstartest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createSample01(session);
+        	long fromId = session.run( "match (n {no:0}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	long toId = session.run( "match (n {no:8}) RETURN id(n)" )
+                    .single()
+                    .get( 0 ).asLong();
+        	session.run( "CALL example.projection.load('p', 'S3', 'CONNECT_TO', 'cost')" ).consume();
+        	List<Object> landmarks = session.run( "CALL example.landmarks.build('p', 3) yield landmarks return landmarks" ).single().get(0).asList();
+        	assertThat( landmarks.size(), equalTo(3));
+        	Record r = session.run( "CALL example.projection.astar('p', " + fromId + ", " + toId + ") yield path, cost return path, cost" ).single();
+        	assertThat( PathtoString(r.get(0).asPath()), equalTo("0 1 3 5 8 "));
+        	assertThat( r.get(1).asDouble(), equalTo(12.0));
+        	session.run( "CALL example.projection.drop('p')" ).consume();
+        }    	
+    }
+    @Test
+    public void projectionAstargridtest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 8);
+        	session.run( "CALL example.projection.load('g', 'Grid', 'CONNECT_TO', 'cost')" ).consume();
+        	session.run( "CALL example.landmarks.build('g', 4)" ).consume();
+        	// A* must give the same cost as djkstra
+        	for (int i = 0; i < 8; i++) {
+        		long fromId = session.run( "match (n:Grid {no:" + (i * 7 % 64) + "}) RETURN id(n)" ).single().get( 0 ).asLong();
+        		long toId = session.run( "match (n:Grid {no:" + (63 - i * 5 % 64) + "}) RETURN id(n)" ).single().get( 0 ).asLong();
+        		double cost = session.run( "CALL example.projection.sample8_1('g', " + fromId + ", " + toId + ") yield cost return cost" ).single().get(0).asDouble();
+        		double a_cost = session.run( "CALL example.projection.astar('g', " + fromId + ", " + toId + ") yield cost return cost" ).single().get(0).asDouble();
+        		assertThat( a_cost, equalTo(cost));
+        	}
+        	session.run( "CALL example.projection.drop('g')" ).consume();
+        }    	
+    }
+    @Test
+    public void chtest() throws Throwable
+    {
+        // In a try-block, to make sure we close the driver and session after the test
+        try(Driver driver = GraphDatabase.driver( neo4j.boltURI() , Config.build()
+                .withEncryptionLevel( Config.EncryptionLevel.NONE ).toConfig() );
+            Session session = driver.session() )
+        {
+        	createGrid(session, 8);
+        	session.run( "CALL example.projection.load('g', 'Grid', 'CONNECT_TO', 'cost')" ).consume();
+        	session.run( "CALL example.ch.build('g')" ).consume();
+        	// contraction hierarchy must give the same cost as djkstra, with a real path
+        	for (int i = 0; i < 8; i++) {
+        		long fromId = session.run( "match (n:Grid {no:" + (i * 7 % 64) + "}) RETURN id(n)" ).single().get( 0 ).asLong();
+        		long toId = session.run( "match (n:Grid {no:" + (63 - i * 5 % 64) + "}) RETURN id(n)" ).single().get( 0 ).asLong();
+        		double cost = session.run( "CALL example.projection.sample8_1('g', " + fromId + ", " + toId + ") yield cost return cost" ).single().get(0).asDouble();
+        		Record r = session.run( "CALL example.ch.query('g', " + fromId + ", " + toId + ") yield path, cost "
+        				+ "return cost, reduce(c = 0.0, r in relationships(path) | c + r.cost), id(last(nodes(path)))" ).single();
+        		assertThat( r.get(0).asDouble(), equalTo(cost));
+        		assertThat( r.get(1).asDouble(), equalTo(cost));
+        		assertThat( r.get(2).asLong(), equalTo(toId));
+        	}
+        	session.run( "CALL example.projection.drop('g')" ).consume();
+        }    	
     }
 	// print path
 	public String PathtoString(Path p) {
@@ -192,6 +1031,13 @@ public class SampleTest
 		return s;		
 	}
 
+    // Grid data: size x size nodes with pseudo random costs
+    public void createGrid(Session session, int size) {
+    	session.run( "UNWIND range(0, $n * $n - 1) AS i CREATE (:Grid {no:i})", Values.parameters("n", size) );
+    	session.run( "MATCH (a:Grid), (b:Grid) WHERE (b.no = a.no + 1 AND b.no % $n <> 0) OR b.no = a.no + $n "
+    			+ "CREATE (a)-[:CONNECT_TO {cost: toFloat(1 + (a.no * 7 + b.no * 13) % 10)}]->(b)", Values.parameters("n", size) );
+    }
+
     // Sample data
     public void createSample01(Session session) {    	
         session.run( "CREATE (p:S3 {no:0}) RETURN id(p)" );